@@ -0,0 +1,38 @@
+package com.github.adamluzsi.csp;
+
+import java.util.concurrent.TimeUnit;
+
+public final class BlockedOperation {
+    private final String label;
+    private final String operation;
+    private final String thread;
+    private final long waitNanos;
+
+    BlockedOperation(String label, String operation, String thread, long waitNanos) {
+        this.label = label;
+        this.operation = operation;
+        this.thread = thread;
+        this.waitNanos = waitNanos;
+    }
+
+    public String label() {
+        return label;
+    }
+
+    public String operation() {
+        return operation;
+    }
+
+    public String thread() {
+        return thread;
+    }
+
+    public long waitNanos() {
+        return waitNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %s by %s waited %dus", label, operation, thread, TimeUnit.NANOSECONDS.toMicros(waitNanos));
+    }
+}
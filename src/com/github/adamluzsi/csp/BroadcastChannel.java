@@ -0,0 +1,281 @@
+package com.github.adamluzsi.csp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+public class BroadcastChannel<E> implements Closeable {
+    public enum SlowSubscriberPolicy {BLOCK, DROP}
+
+    private final AtomicReferenceArray<E> ring;
+    private final int capacity;
+    private final int mask;
+    private final SlowSubscriberPolicy policy;
+    private final List<Subscription<E>> subscriptions = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean open = new AtomicBoolean(true);
+
+    private final ReentrantLock producer = new ReentrantLock();
+    private final ReentrantLock mutex = new ReentrantLock();
+    private final Condition published = mutex.newCondition();
+    private final Condition consumed = mutex.newCondition();
+    private final AtomicInteger waitingSubscribers = new AtomicInteger();
+    private volatile boolean producerWaiting;
+
+    // next sequence to publish, only written while holding the producer lock
+    private volatile long sequence;
+    // cached lower bound of the slowest subscriber's cursor
+    private long gate;
+
+    public BroadcastChannel(int capacity) {
+        this(capacity, SlowSubscriberPolicy.BLOCK);
+    }
+
+    public BroadcastChannel(int capacity, SlowSubscriberPolicy policy) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+
+        this.ring = new AtomicReferenceArray<>(size);
+        this.capacity = size;
+        this.mask = size - 1;
+        this.policy = policy;
+    }
+
+    public Subscription<E> subscribe() {
+        Subscription<E> subscription = new Subscription<>(this);
+
+        producer.lock();
+        try {
+            subscription.cursor = sequence;
+            subscriptions.add(subscription);
+        } finally {
+            producer.unlock();
+        }
+
+        return subscription;
+    }
+
+    public int subscribers() {
+        return subscriptions.size();
+    }
+
+    public void put(E e) throws InterruptedException {
+        if (!open.get()) {
+            throw new ChannelIsClosed();
+        }
+
+        producer.lockInterruptibly();
+        try {
+            long seq = sequence;
+
+            while (seq - gate >= capacity) {
+                gate = minimumCursor(seq);
+
+                if (seq - gate < capacity) {
+                    break;
+                }
+
+                if (policy == SlowSubscriberPolicy.DROP) {
+                    dropSlowSubscribers(seq);
+                } else {
+                    awaitConsumed(seq);
+                }
+            }
+
+            ring.set((int) seq & mask, e);
+            sequence = seq + 1;
+
+            if (waitingSubscribers.get() > 0) {
+                signal(published);
+            }
+        } finally {
+            producer.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!open.compareAndSet(true, false)) {
+            throw new IOException(new ChannelIsClosed());
+        }
+
+        mutex.lock();
+        try {
+            published.signalAll();
+            consumed.signalAll();
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    private long minimumCursor(long seq) {
+        long min = seq;
+
+        for (Subscription<E> subscription : subscriptions) {
+            min = Math.min(min, subscription.cursor);
+        }
+
+        return min;
+    }
+
+    private void dropSlowSubscribers(long seq) {
+        for (Subscription<E> subscription : subscriptions) {
+            if (seq - subscription.cursor >= capacity) {
+                subscription.dropped = true;
+                detach(subscription);
+            }
+        }
+
+        gate = minimumCursor(seq);
+    }
+
+    private void awaitConsumed(long seq) throws InterruptedException {
+        mutex.lockInterruptibly();
+        try {
+            producerWaiting = true;
+
+            while (open.get() && seq - (gate = minimumCursor(seq)) >= capacity) {
+                consumed.await();
+            }
+        } finally {
+            producerWaiting = false;
+            mutex.unlock();
+        }
+
+        if (!open.get()) {
+            throw new ChannelIsClosed();
+        }
+    }
+
+    private void awaitPublished(Subscription<E> subscription, long cursor) throws InterruptedException {
+        waitingSubscribers.incrementAndGet();
+        try {
+            mutex.lockInterruptibly();
+            try {
+                while (cursor >= sequence && open.get() && subscription.attached) {
+                    published.await();
+                }
+            } finally {
+                mutex.unlock();
+            }
+        } finally {
+            waitingSubscribers.decrementAndGet();
+        }
+    }
+
+    private void detach(Subscription<E> subscription) {
+        subscription.attached = false;
+        subscriptions.remove(subscription);
+
+        signal(published);
+        signal(consumed);
+    }
+
+    private void signal(Condition condition) {
+        mutex.lock();
+        try {
+            condition.signalAll();
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    public static class Subscription<E> implements Closeable {
+        private final BroadcastChannel<E> channel;
+        private volatile long cursor;
+        private volatile boolean attached = true;
+        private volatile boolean dropped;
+
+        private Subscription(BroadcastChannel<E> channel) {
+            this.channel = channel;
+        }
+
+        public E take() throws InterruptedException {
+            long c = cursor;
+
+            while (c >= channel.sequence) {
+                if (!attached) {
+                    throw new ChannelIsClosed();
+                }
+
+                if (!channel.open.get()) {
+                    if (c < channel.sequence) {
+                        break;
+                    }
+
+                    throw new ChannelIsClosed();
+                }
+
+                channel.awaitPublished(this, c);
+            }
+
+            return advance(c);
+        }
+
+        public E poll() {
+            long c = cursor;
+
+            if (c >= channel.sequence || !attached) {
+                return null;
+            }
+
+            try {
+                return advance(c);
+            } catch (ChannelIsClosed ex) {
+                return null;
+            }
+        }
+
+        public void forEach(Consumer<? super E> action) {
+            try {
+                while (true) {
+                    action.accept(take());
+                }
+            } catch (ChannelIsClosed e) {
+                // end of stream
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        public boolean isDropped() {
+            return dropped;
+        }
+
+        @Override
+        public void close() {
+            if (attached) {
+                channel.detach(this);
+            }
+        }
+
+        private E advance(long c) throws ChannelIsClosed {
+            E e = channel.ring.get((int) c & channel.mask);
+
+            // once detached the producer no longer gates on this cursor, so the slot may be overwritten
+            if (!attached) {
+                throw new ChannelIsClosed();
+            }
+
+            cursor = c + 1;
+
+            if (channel.producerWaiting) {
+                channel.signal(channel.consumed);
+            }
+
+            return e;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.github.adamluzsi.csp;
+
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.testng.Assert.*;
+
+public class BroadcastChannelTest {
+    private ExecutorService e = Executors.newCachedThreadPool();
+
+    @Test
+    public void testPut_ManySubscribers_EverySubscriberReceivesEveryElement() throws Exception {
+        BroadcastChannel<Integer> subject = new BroadcastChannel<>(4);
+        List<Future<List<Integer>>> futures = new ArrayList<>();
+
+        for (int i = 0; i < 3; i++) {
+            BroadcastChannel.Subscription<Integer> subscription = subject.subscribe();
+
+            futures.add(e.submit(() -> {
+                List<Integer> result = new ArrayList<>();
+                subscription.forEach(result::add);
+                return result;
+            }));
+        }
+
+        List<Integer> expected = new ArrayList<>();
+
+        for (int i = 0; i < 100; i++) {
+            subject.put(i);
+            expected.add(i);
+        }
+
+        subject.close();
+
+        for (Future<List<Integer>> future : futures) {
+            assertEquals(future.get(1, TimeUnit.SECONDS), expected);
+        }
+    }
+
+    @Test
+    public void testPut_BlockPolicyAndSubscriberLagging_ProducerGatedUntilSubscriberConsumes() throws Exception {
+        BroadcastChannel<Integer> subject = new BroadcastChannel<>(2);
+        BroadcastChannel.Subscription<Integer> subscription = subject.subscribe();
+
+        subject.put(1);
+        subject.put(2);
+
+        Future<?> blocked = e.submit(() -> {
+            subject.put(3);
+            return null;
+        });
+
+        assertThrows(TimeoutException.class, () -> blocked.get(50, TimeUnit.MILLISECONDS));
+
+        assertEquals(subscription.take(), Integer.valueOf(1));
+        blocked.get(1, TimeUnit.SECONDS);
+
+        assertEquals(subscription.take(), Integer.valueOf(2));
+        assertEquals(subscription.take(), Integer.valueOf(3));
+    }
+
+    @Test
+    public void testPut_DropPolicyAndSubscriberLagging_SlowSubscriberDropped() throws Exception {
+        BroadcastChannel<Integer> subject = new BroadcastChannel<>(2, BroadcastChannel.SlowSubscriberPolicy.DROP);
+        BroadcastChannel.Subscription<Integer> slow = subject.subscribe();
+
+        for (int i = 0; i < 3; i++) {
+            subject.put(i);
+        }
+
+        assertTrue(slow.isDropped());
+        assertEquals(subject.subscribers(), 0);
+        assertThrows(ChannelIsClosed.class, slow::take);
+    }
+
+    @Test
+    public void testSubscribe_AfterElementsPublished_OnlyNewElementsReceived() throws Exception {
+        BroadcastChannel<Integer> subject = new BroadcastChannel<>(4);
+
+        subject.put(1);
+        BroadcastChannel.Subscription<Integer> subscription = subject.subscribe();
+        subject.put(2);
+
+        assertEquals(subscription.poll(), Integer.valueOf(2));
+        assertNull(subscription.poll());
+    }
+
+    @Test
+    public void testClose_SubscriberUnsubscribed_NoLongerGatesProducer() throws Exception {
+        BroadcastChannel<Integer> subject = new BroadcastChannel<>(1);
+        BroadcastChannel.Subscription<Integer> subscription = subject.subscribe();
+
+        subject.put(1);
+        subscription.close();
+
+        e.submit(() -> {
+            subject.put(2);
+            return null;
+        }).get(1, TimeUnit.SECONDS);
+
+        assertThrows(ChannelIsClosed.class, subscription::take);
+    }
+
+    @Test
+    public void testClose_ChannelClosedWhileSubscriberWaits_ForEachReturns() throws Exception {
+        BroadcastChannel<Integer> subject = new BroadcastChannel<>(4);
+        BroadcastChannel.Subscription<Integer> subscription = subject.subscribe();
+
+        Future<?> future = e.submit(() -> subscription.forEach((i) -> { }));
+
+        subject.close();
+
+        future.get(1, TimeUnit.SECONDS);
+        assertThrows(IOException.class, subject::close);
+        assertThrows(ChannelIsClosed.class, () -> subject.put(1));
+    }
+
+}
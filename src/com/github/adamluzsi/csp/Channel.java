@@ -2,27 +2,83 @@ package com.github.adamluzsi.csp;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
 import java.util.stream.Stream;
 
-interface Func<T> {
-    T call() throws InterruptedException;
-}
-
-interface VoidFunc {
-    void call() throws InterruptedException;
-}
-
 public class Channel<E> implements Closeable, BlockingQueue<E> {
-    private final BlockingQueue<E> queue = new SynchronousQueue<>();
+    private final BlockingQueue<E> queue;
+    private final OverflowPolicy<E> overflow;
+    private final LongAdder dropped = new LongAdder();
+    private final AtomicInteger producers = new AtomicInteger();
+    private final AtomicInteger consumers = new AtomicInteger();
+    private final int capacity;
     private final AtomicBoolean open = new AtomicBoolean(true);
-    private final List<Thread> threads = new ArrayList<>();
-    private final ReentrantLock mutex = new ReentrantLock();
+    private final AtomicBoolean released = new AtomicBoolean();
+    private final Set<Waiter> threads = ConcurrentHashMap.newKeySet();
+    private volatile ContentionProfiler profiler;
+    private volatile SojournClock clock;
+    private volatile Throwable failure;
+
+    public Channel() {
+        this(0);
+    }
+
+    public Channel(int capacity) {
+        this(capacity, OverflowPolicy.block());
+    }
+
+    public Channel(int capacity, OverflowPolicy<E> overflow) {
+        this(capacity == 0 ? new SynchronousQueue<>() : new ArrayBlockingQueue<>(capacity), overflow);
+
+        if (capacity == 0 && !overflow.blocks()) {
+            throw new IllegalArgumentException("overflow policy requires a buffered channel");
+        }
+    }
+
+    public Channel(long budget, ToLongFunction<? super E> weigher) {
+        this(budget, weigher, OverflowPolicy.block());
+    }
+
+    public Channel(long budget, ToLongFunction<? super E> weigher, OverflowPolicy<E> overflow) {
+        this(new WeightedQueue<>(budget, weigher), overflow);
+    }
+
+    public Channel(int capacity, Path directory, Codec<E> codec) {
+        this(new SpillingQueue<>(capacity, directory, codec), OverflowPolicy.block());
+    }
+
+    Channel(BlockingQueue<E> queue, OverflowPolicy<E> overflow) {
+        this.queue = queue;
+        this.overflow = overflow;
+        this.capacity = (int) Math.min(Integer.MAX_VALUE, (long) queue.size() + queue.remainingCapacity());
+    }
+
+    public static <E> Channel<E> eliminating(int width) {
+        return new Channel<>(new EliminationQueue<>(width), OverflowPolicy.block());
+    }
+
+    public static <E> Channel<E> generate(Callable<? extends E> producer) {
+        return generate(0, producer);
+    }
+
+    public static <E> Channel<E> generate(int capacity, Callable<? extends E> producer) {
+        GeneratorQueue<E> queue = new GeneratorQueue<>(capacity);
+        Channel<E> channel = new Channel<>(queue, OverflowPolicy.block());
+
+        Threads.preferVirtual().newThread(() -> channel.produce(queue, producer)).start();
+
+        return channel;
+    }
 
     public static void close(Channel<?> chan) throws IllegalStateException {
         try {
@@ -36,34 +92,272 @@ public class Channel<E> implements Closeable, BlockingQueue<E> {
         close((Channel<?>) queue);
     }
 
+    // closes with a cause that takers get on their ChannelIsClosed, a channel the consumer already closed is left alone
+    void end(Throwable cause) {
+        if (cause != null && open.get()) {
+            failure = cause;
+        }
+
+        try {
+            close();
+        } catch (IOException ex) {
+            // already closed
+        }
+    }
+
+    // closing stops the producers, receivers still drain what is buffered and only then get ChannelIsClosed
     @Override
     public void close() throws IOException {
         try {
-            withLock(() -> {
+            if (!ok() || !open.compareAndSet(true, false)) {
+                throwInterruptedException(null);
+            }
+        } catch (InterruptedException ex) {
+            throw new IOException(ex);
+        }
 
-                if (!ok()) {
-                    throwInterruptedException(null);
-                }
+        // only receivers waiting on an empty buffer are blocked, so interrupting them hands out no end too early
+        threads.forEach(Waiter::interrupt);
+
+        if (capacity == 0 || queue.isEmpty()) {
+            release();
+        }
+    }
 
-                this.open.set(false);
-                threads.forEach(Thread::interrupt);
+    public Received<E> receive() throws InterruptedException {
+        try {
+            return Received.of(take());
+        } catch (ChannelIsClosed ex) {
+            return Received.end();
+        }
+    }
 
-            });
-        } catch (InterruptedException ex) {
-            throw new IOException(ex);
+    public Received<E> tryReceive() {
+        E e = poll();
+        if (e != null) {
+            return Received.of(e);
+        }
 
+        return open.get() ? Received.empty() : Received.end();
+    }
+
+    public Status trySend(E e) {
+        if (!open.get()) {
+            return Status.CLOSED;
+        }
+
+        if (offer(e)) {
+            return Status.OK;
+        }
+
+        return open.get() ? Status.WOULD_BLOCK : Status.CLOSED;
+    }
+
+    public boolean isOpen() {
+        return open.get();
+    }
+
+    // counted in elements, so a weight-bounded channel reports Integer.MAX_VALUE here and its limit through the budget
+    public int capacity() {
+        return capacity;
+    }
+
+    // weight left before puts block, for a channel counted in elements every element weighs one
+    public long remainingBudget() {
+        if (open.get() && queue instanceof WeightedQueue) {
+            return ((WeightedQueue<E>) queue).remainingBudget();
         }
+
+        return remainingCapacity();
+    }
+
+    public int waitingProducers() {
+        return producers.get();
+    }
+
+    public int waitingConsumers() {
+        return consumers.get();
+    }
+
+    public Throwable failure() {
+        return failure;
+    }
+
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    public ContentionProfiler profile() {
+        StackTraceElement site = new Throwable().getStackTrace()[1];
+
+        return profile(site.getClassName() + "." + site.getMethodName() + ":" + site.getLineNumber());
+    }
+
+    public ContentionProfiler profile(String label) {
+        return profile(new ContentionProfiler(label));
+    }
+
+    public ContentionProfiler profile(ContentionProfiler profiler) {
+        this.profiler = profiler;
+
+        return profiler;
+    }
+
+    public LatencyHistogram measureLatency() {
+        return measureLatency(false);
+    }
+
+    public LatencyHistogram measureLatency(boolean resetOnRead) {
+        SojournClock clock = new SojournClock(new LatencyHistogram(resetOnRead));
+        this.clock = clock;
+
+        return clock.histogram();
+    }
+
+    public WaitGroup workers(int min, int max, Consumer<? super E> action) {
+        return workers(min, max, 60, TimeUnit.SECONDS, action);
+    }
+
+    public WaitGroup workers(int min, int max, long keepAlive, TimeUnit unit, Consumer<? super E> action) {
+        return new WorkerPool<>(this, min, max, keepAlive, unit, action).start();
+    }
+
+    public Channel<List<E>> window(int maxSize, long maxDelay, TimeUnit unit) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("window size must be positive");
+        }
+
+        Channel<List<E>> out = new Channel<>();
+        long delay = unit.toNanos(maxDelay);
+
+        go(() -> {
+            boolean upstream = true;
+
+            try {
+                while (upstream) {
+                    List<E> batch = new ArrayList<>(maxSize);
+
+                    try {
+                        batch.add(take());
+
+                        long deadline = System.nanoTime() + delay;
+                        while (batch.size() < maxSize) {
+                            drainTo(batch, maxSize - batch.size());
+
+                            long remaining = deadline - System.nanoTime();
+                            if (batch.size() >= maxSize || remaining <= 0) {
+                                break;
+                            }
+
+                            E e = poll(remaining, TimeUnit.NANOSECONDS);
+                            if (e == null) {
+                                break;
+                            }
+
+                            batch.add(e);
+                        }
+                    } catch (ChannelIsClosed ex) {
+                        upstream = false;
+                    }
+
+                    if (!batch.isEmpty()) {
+                        out.put(batch);
+                    }
+                }
+            } catch (InterruptedException ex) {
+                Thread.interrupted();
+            } finally {
+                try {
+                    out.close();
+                } catch (IOException ex) {
+                    // closed by the downstream consumer
+                }
+            }
+        });
+
+        return out;
+    }
+
+    public <R> Channel<R> mapOrdered(Function<? super E, ? extends R> fn, int parallelism, int maxInFlight) {
+        if (parallelism < 1 || maxInFlight < parallelism) {
+            throw new IllegalArgumentException("mapOrdered requires 1 <= parallelism <= maxInFlight");
+        }
+
+        Channel<R> out = new Channel<>();
+        Channel<Runnable> work = new Channel<>();
+        BlockingQueue<CompletableFuture<R>> reorder = new ArrayBlockingQueue<>(maxInFlight);
+        CompletableFuture<R> end = new CompletableFuture<>();
+        AtomicBoolean emitting = new AtomicBoolean(true);
+
+        work.workers(parallelism, parallelism, Runnable::run);
+
+        Thread dispatcher = go(() -> {
+            try {
+                while (true) {
+                    E e = take();
+                    CompletableFuture<R> result = new CompletableFuture<>();
+
+                    // the reorder buffer is bounded, so a slow head element stalls intake instead of growing memory
+                    reorder.put(result);
+                    work.put(() -> {
+                        try {
+                            result.complete(fn.apply(e));
+                        } catch (Throwable t) {
+                            result.completeExceptionally(t);
+                        }
+                    });
+                }
+            } catch (InterruptedException ex) {
+                Thread.interrupted();
+            }
+
+            // once the emitter is gone nobody drains the reorder buffer, so waiting for room there would never end
+            try {
+                if (emitting.get()) {
+                    reorder.put(end);
+                }
+            } catch (InterruptedException ex) {
+                // the emitter left while the buffer was full
+            }
+        });
+
+        go(() -> {
+            Throwable failure = null;
+
+            try {
+                for (CompletableFuture<R> result = reorder.take(); result != end; result = reorder.take()) {
+                    out.put(result.get());
+                }
+            } catch (InterruptedException ex) {
+                Thread.interrupted();
+            } catch (ExecutionException ex) {
+                failure = ex.getCause();
+            } finally {
+                emitting.set(false);
+                dispatcher.interrupt();
+
+                work.end(null);
+                // a failed transform ends the output with its cause, so consumers can tell it from a clean end
+                out.end(failure);
+            }
+        });
+
+        return out;
     }
 
     @Override
     public void forEach(Consumer<? super E> action) {
         try {
-            while (ok()) {
-                action.accept(take());
+            for (Received<E> received = receive(); received.ok(); received = receive()) {
+                action.accept(received.value());
             }
         } catch (InterruptedException e) {
             Thread.interrupted();
         }
+
+        if (failure != null) {
+            throw new CompletionException(failure);
+        }
     }
 
     @Override
@@ -83,43 +377,212 @@ public class Channel<E> implements Closeable, BlockingQueue<E> {
     // [CORE]
     //
     private Object synchronize(Func<Object> fn) throws InterruptedException {
+        return synchronize(null, fn);
+    }
+
+    private Object synchronize(String operation, Func<Object> fn) throws InterruptedException {
+        Waiter current = new Waiter();
+
         try {
-            withLock(() -> {
-                if (!ok()) {
-                    throwInterruptedException(null);
-                }
+            if (!ok()) {
+                throwInterruptedException(null);
+            }
 
-                threads.add(Thread.currentThread());
-            });
+            threads.add(current);
+
+            // close() may have flipped the flag after the check above, without seeing this thread registered
+            if (!open.get()) {
+                throwInterruptedException(null);
+            }
+
+            ContentionProfiler profiler = this.profiler;
+            if (operation != null && profiler != null) {
+                return profiler.record(operation, fn);
+            }
 
             return fn.call();
+        } catch (ChannelIsClosed ex) {
+            throw ex;
         } catch (InterruptedException ex) {
             throwInterruptedException(ex);
         } finally {
-            withLock(() -> threads.remove(Thread.currentThread()));
+            current.leave();
+            threads.remove(current);
         }
 
         throwInterruptedException(null);
         return null;
     }
 
-    private void withLock(VoidFunc func) throws InterruptedException {
+    // a closed channel keeps handing out its buffer, an unbuffered one has nothing left and never touches the queue again
+    private Object receiving(String operation, Func<Object> fn) throws InterruptedException {
+        try {
+            return synchronize(operation, fn);
+        } catch (ChannelIsClosed ex) {
+            E e = leftover();
+            if (e == null) {
+                throw ex;
+            }
+
+            return e;
+        }
+    }
+
+    private E leftover() {
+        if (open.get() || capacity == 0) {
+            return null;
+        }
+
+        E e = dequeued(queue.poll());
+        if (e == null) {
+            releaseQuietly();
+        }
+
+        return e;
+    }
+
+    private int leftovers(Collection<? super E> c, int maxElements) {
+        int n = 0;
+
+        for (E e; n < maxElements && (e = leftover()) != null; n++) {
+            c.add(e);
+        }
+
+        return n;
+    }
+
+    private boolean readable() {
+        return open.get() || capacity > 0;
+    }
+
+    // resources behind the buffer, like spilled segments, outlive the close until the last element is taken
+    private void release() throws IOException {
+        if (released.compareAndSet(false, true) && queue instanceof Closeable) {
+            ((Closeable) queue).close();
+        }
+    }
+
+    private void releaseQuietly() {
+        try {
+            release();
+        } catch (IOException ex) {
+            // every element is already delivered, a buffer that fails to clean up is not the receiver's problem
+        }
+    }
+
+    private boolean stamped(Func<Boolean> fn) throws InterruptedException {
+        SojournClock clock = this.clock;
+        if (clock == null) {
+            return fn.call();
+        }
+
+        SojournClock.Stamp stamp = clock.stamp();
+        boolean admitted = false;
+        try {
+            admitted = fn.call();
+            return admitted;
+        } finally {
+            if (!admitted) {
+                clock.cancel(stamp);
+            }
+        }
+    }
+
+    private E dequeued(E e) {
+        SojournClock clock = this.clock;
+        if (clock != null && e != null) {
+            clock.dequeued(1);
+        }
+
+        return e;
+    }
+
+    // bulk removal has to hand back one stamp per removed element, or later sojourn times are measured against the wrong put,
+    // the count comes from the size because some queues test the predicate more than once per element
+    private boolean evicting(SojournClock clock, Func<Boolean> fn) throws InterruptedException {
+        int before = queue.size();
+        boolean removed = fn.call();
+        int n = before - queue.size();
+
+        if (n > 0) {
+            clock.evicted(n);
+        }
+
+        return removed;
+    }
+
+    private int dequeued(int n) {
+        SojournClock clock = this.clock;
+        if (clock != null && n > 0) {
+            clock.dequeued(n);
+        }
+
+        return n;
+    }
+
+    static Thread go(Runnable runnable) {
+        Thread thread = new Thread(runnable);
+        thread.setDaemon(true);
+        thread.start();
+
+        return thread;
+    }
+
+    // runs registered like any blocked operation, so closing the channel interrupts the generator wherever it waits
+    private void produce(GeneratorQueue<E> demand, Callable<? extends E> producer) {
+        AtomicReference<Throwable> failed = new AtomicReference<>();
+
         try {
-            mutex.lock();
+            synchronize(() -> {
+                while (true) {
+                    demand.awaitDemand();
+
+                    E e;
+                    try {
+                        e = producer.call();
+                    } catch (InterruptedException ex) {
+                        throw ex;
+                    } catch (Exception ex) {
+                        // a failed generator ends the stream with its cause, not like a source that ran dry
+                        failed.set(ex);
+                        break;
+                    }
+
+                    if (e == null) {
+                        break;
+                    }
+
+                    // a receiver that gave up after the permit was claimed leaves its item behind, so wait for room instead of dropping
+                    stamped(() -> {
+                        queue.put(e);
+                        return true;
+                    });
+                }
 
-            func.call();
+                // items already handed over still belong to the receivers, so the channel ends only once they are taken
+                demand.awaitDrained();
+                return null;
+            });
+        } catch (InterruptedException ex) {
+            Thread.interrupted();
         } finally {
-            mutex.unlock();
+            if (open.get()) {
+                end(failed.get());
+            }
         }
     }
 
+    boolean backlogged() {
+        return producers.get() > 0 || !queue.isEmpty();
+    }
+
     private boolean ok() {
         return open.get() && !Thread.currentThread().isInterrupted();
     }
 
     private void throwInterruptedException(InterruptedException ex) throws InterruptedException {
         if (!open.get()) {
-            throw new ChannelIsClosed();
+            throw failure == null ? new ChannelIsClosed() : new ChannelIsClosed(failure);
         }
 
         if (ex != null) {
@@ -137,21 +600,51 @@ public class Channel<E> implements Closeable, BlockingQueue<E> {
 
     @Override
     public void put(E e) throws InterruptedException {
-        synchronize(() -> {
-            queue.put(e);
+        synchronize("put", () -> {
+            SojournClock clock = this.clock;
+            SojournClock.Stamp stamp = clock == null ? null : clock.stamp();
+            boolean admitted = false;
+
+            producers.incrementAndGet();
+            try {
+                int discarded = overflow.admit(queue, e);
+                admitted = discarded == 0 || overflow.evictsOldest();
+
+                if (discarded > 0) {
+                    dropped.add(discarded);
+
+                    if (clock != null && overflow.evictsOldest()) {
+                        clock.evicted(discarded);
+                    }
+                }
+            } finally {
+                producers.decrementAndGet();
+
+                if (stamp != null && !admitted) {
+                    clock.cancel(stamp);
+                }
+            }
+
             return null;
         });
     }
 
     @Override
     public E take() throws InterruptedException {
-        return (E) synchronize(queue::take);
+        return (E) receiving("take", () -> {
+            consumers.incrementAndGet();
+            try {
+                return dequeued(queue.take());
+            } finally {
+                consumers.decrementAndGet();
+            }
+        });
     }
 
     @Override
     public boolean add(E e) {
         try {
-            return (boolean) synchronize(() -> queue.add(e));
+            return (boolean) synchronize(() -> stamped(() -> queue.add(e)));
         } catch (InterruptedException ex) {
             return false;
         }
@@ -160,7 +653,7 @@ public class Channel<E> implements Closeable, BlockingQueue<E> {
     @Override
     public boolean offer(E e) {
         try {
-            return (boolean) synchronize(() -> queue.offer(e));
+            return (boolean) synchronize(() -> stamped(() -> queue.offer(e)));
         } catch (InterruptedException ex) {
             return false;
         }
@@ -168,7 +661,14 @@ public class Channel<E> implements Closeable, BlockingQueue<E> {
 
     @Override
     public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
-        return (boolean) synchronize(() -> queue.offer(e, timeout, unit));
+        return (boolean) synchronize("offer", () -> {
+            producers.incrementAndGet();
+            try {
+                return stamped(() -> queue.offer(e, timeout, unit));
+            } finally {
+                producers.decrementAndGet();
+            }
+        });
     }
 
     @Override
@@ -176,14 +676,14 @@ public class Channel<E> implements Closeable, BlockingQueue<E> {
         try {
             return (Iterator<E>) synchronize(queue::iterator);
         } catch (InterruptedException ex) {
-            return Collections.emptyIterator();
+            return readable() ? queue.iterator() : Collections.emptyIterator();
         }
     }
 
     @Override
     public E poll() {
         try {
-            return (E) synchronize(queue::poll);
+            return (E) receiving(null, () -> dequeued(queue.poll()));
         } catch (InterruptedException ex) {
             return null;
         }
@@ -191,22 +691,34 @@ public class Channel<E> implements Closeable, BlockingQueue<E> {
 
     @Override
     public E poll(long timeout, TimeUnit unit) throws InterruptedException {
-        return (E) synchronize(() -> queue.poll(timeout, unit));
+        return (E) receiving("poll", () -> {
+            consumers.incrementAndGet();
+            try {
+                return dequeued(queue.poll(timeout, unit));
+            } finally {
+                consumers.decrementAndGet();
+            }
+        });
     }
 
     @Override
     public int remainingCapacity() {
-        try {
-            return (int) synchronize(queue::remainingCapacity);
-        } catch (InterruptedException ex) {
-            return 0;
-        }
+        return open.get() ? queue.remainingCapacity() : 0;
     }
 
     @Override
     public boolean remove(Object o) {
         try {
-            return (boolean) synchronize(() -> queue.remove(o));
+            return (boolean) synchronize(() -> {
+                boolean removed = queue.remove(o);
+
+                SojournClock clock = this.clock;
+                if (clock != null && removed) {
+                    clock.evicted(1);
+                }
+
+                return removed;
+            });
         } catch (InterruptedException ex) {
             return false;
         }
@@ -214,35 +726,31 @@ public class Channel<E> implements Closeable, BlockingQueue<E> {
 
     @Override
     public boolean contains(Object o) {
-        try {
-            return (boolean) synchronize(() -> queue.contains(o));
-        } catch (InterruptedException ex) {
-            return false;
-        }
+        return readable() && queue.contains(o);
     }
 
     @Override
     public int drainTo(Collection<? super E> c) {
         try {
-            return (int) synchronize(() -> queue.drainTo(c));
+            return (int) synchronize(() -> dequeued(queue.drainTo(c)));
         } catch (InterruptedException ex) {
-            return 0;
+            return leftovers(c, Integer.MAX_VALUE);
         }
     }
 
     @Override
     public int drainTo(Collection<? super E> c, int maxElements) {
         try {
-            return (int) synchronize(() -> queue.drainTo(c, maxElements));
+            return (int) synchronize(() -> dequeued(queue.drainTo(c, maxElements)));
         } catch (InterruptedException ex) {
-            return 0;
+            return leftovers(c, maxElements);
         }
     }
 
     @Override
     public E remove() {
         try {
-            return (E) synchronize(queue::remove);
+            return (E) receiving(null, () -> dequeued(queue.remove()));
         } catch (InterruptedException ex) {
             throw new NoSuchElementException();
         }
@@ -250,53 +758,48 @@ public class Channel<E> implements Closeable, BlockingQueue<E> {
 
     @Override
     public E element() {
-        try {
-            return (E) synchronize(queue::element);
-        } catch (InterruptedException ex) {
+        if (!readable()) {
             throw new NoSuchElementException();
         }
+
+        return queue.element();
     }
 
     @Override
     public E peek() {
-        try {
-            return (E) synchronize(queue::peek);
-        } catch (InterruptedException ex) {
-            return null;
-        }
+        return readable() ? queue.peek() : null;
     }
 
     @Override
     public int size() {
-        try {
-            return (int) synchronize(queue::size);
-        } catch (InterruptedException ex) {
-            return 0;
-        }
+        return readable() ? queue.size() : 0;
     }
 
     @Override
     public boolean isEmpty() {
-        try {
-            return (boolean) synchronize(queue::isEmpty);
-        } catch (InterruptedException ex) {
-            return true;
-        }
+        return !readable() || queue.isEmpty();
     }
 
     @Override
     public boolean containsAll(Collection<?> c) {
-        try {
-            return (boolean) synchronize(() -> queue.containsAll(c));
-        } catch (InterruptedException ex) {
-            return false;
-        }
+        return readable() && queue.containsAll(c);
     }
 
     @Override
     public boolean addAll(Collection<? extends E> c) {
         try {
-            return (boolean) synchronize(() -> queue.addAll(c));
+            return (boolean) synchronize(() -> {
+                if (clock == null) {
+                    return queue.addAll(c);
+                }
+
+                boolean modified = false;
+                for (E e : c) {
+                    modified |= stamped(() -> queue.add(e));
+                }
+
+                return modified;
+            });
         } catch (InterruptedException ex) {
             return false;
         }
@@ -305,7 +808,11 @@ public class Channel<E> implements Closeable, BlockingQueue<E> {
     @Override
     public boolean removeAll(Collection<?> c) {
         try {
-            return (boolean) synchronize(() -> queue.removeAll(c));
+            return (boolean) synchronize(() -> {
+                SojournClock clock = this.clock;
+
+                return clock == null ? queue.removeAll(c) : evicting(clock, () -> queue.removeAll(c));
+            });
         } catch (InterruptedException ex) {
             return false;
         }
@@ -314,7 +821,11 @@ public class Channel<E> implements Closeable, BlockingQueue<E> {
     @Override
     public boolean retainAll(Collection<?> c) {
         try {
-            return (boolean) synchronize(() -> queue.retainAll(c));
+            return (boolean) synchronize(() -> {
+                SojournClock clock = this.clock;
+
+                return clock == null ? queue.retainAll(c) : evicting(clock, () -> queue.retainAll(c));
+            });
         } catch (InterruptedException ex) {
             return false;
         }
@@ -326,6 +837,11 @@ public class Channel<E> implements Closeable, BlockingQueue<E> {
             synchronize(() -> {
                 queue.clear();
 
+                SojournClock clock = this.clock;
+                if (clock != null) {
+                    clock.clear();
+                }
+
                 return null;
             });
         } catch (InterruptedException ex) {
@@ -336,7 +852,11 @@ public class Channel<E> implements Closeable, BlockingQueue<E> {
     @Override
     public boolean removeIf(Predicate<? super E> filter) {
         try {
-            return (boolean) synchronize(() -> queue.removeIf(filter));
+            return (boolean) synchronize(() -> {
+                SojournClock clock = this.clock;
+
+                return clock == null ? queue.removeIf(filter) : evicting(clock, () -> queue.removeIf(filter));
+            });
         } catch (InterruptedException ex) {
             return false;
         }
@@ -368,4 +888,26 @@ public class Channel<E> implements Closeable, BlockingQueue<E> {
             return null;
         }
     }
+
+    // receivers keep using the channel after close, so an interrupt meant to wake them must never outlive the operation
+    private static final class Waiter {
+        private final Thread thread = Thread.currentThread();
+        private boolean active = true;
+        private boolean interrupted;
+
+        synchronized void interrupt() {
+            if (active) {
+                interrupted = true;
+                thread.interrupt();
+            }
+        }
+
+        synchronized void leave() {
+            active = false;
+
+            if (interrupted) {
+                Thread.interrupted();
+            }
+        }
+    }
 }
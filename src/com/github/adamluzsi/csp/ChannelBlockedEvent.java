@@ -0,0 +1,19 @@
+package com.github.adamluzsi.csp;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.github.adamluzsi.csp.ChannelBlocked")
+@Label("Channel Blocked")
+@Category("CSP")
+@Description("A thread blocked on a profiled channel operation")
+class ChannelBlockedEvent extends Event {
+    @Label("Channel")
+    String channel;
+
+    @Label("Operation")
+    String operation;
+}
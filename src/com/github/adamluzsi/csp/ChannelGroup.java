@@ -0,0 +1,172 @@
+package com.github.adamluzsi.csp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+public class ChannelGroup<E> implements Closeable {
+    // the channels can't wake a worker on put, so an idle worker polls them all with backoff,
+    // the cap trades the first element's pickup delay after a quiet spell against idle polling cost
+    private static final long MIN_IDLE = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final long MAX_IDLE = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final List<List<Channel<? extends E>>> homes;
+    private final List<Thread> threads = new CopyOnWriteArrayList<>();
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicBoolean open = new AtomicBoolean(true);
+
+    public ChannelGroup(int workers) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("at least one worker is required");
+        }
+
+        this.homes = new ArrayList<>(workers);
+
+        for (int i = 0; i < workers; i++) {
+            this.homes.add(new CopyOnWriteArrayList<>());
+        }
+    }
+
+    public void register(Channel<? extends E> channel) {
+        if (!open.get()) {
+            throw new IllegalStateException(new ChannelIsClosed());
+        }
+
+        homes.get(Math.floorMod(next.getAndIncrement(), homes.size())).add(channel);
+        signal();
+    }
+
+    public int size() {
+        int n = 0;
+
+        for (List<Channel<? extends E>> home : homes) {
+            n += home.size();
+        }
+
+        return n;
+    }
+
+    public int workers() {
+        return homes.size();
+    }
+
+    public WaitGroup consume(Consumer<? super E> action) {
+        WaitGroup wg = new WaitGroup();
+
+        for (int i = 0; i < homes.size(); i++) {
+            int worker = i;
+            wg.add(1);
+
+            threads.add(Channel.go(() -> {
+                try {
+                    work(worker, action);
+                } finally {
+                    wg.done();
+                }
+            }));
+        }
+
+        return wg;
+    }
+
+    // only the workers stop, the registered channels stay open for their owners
+    @Override
+    public void close() throws IOException {
+        if (!open.compareAndSet(true, false)) {
+            throw new IOException(new ChannelIsClosed());
+        }
+
+        signal();
+    }
+
+    private void signal() {
+        threads.forEach(LockSupport::unpark);
+    }
+
+    private void work(int worker, Consumer<? super E> action) {
+        List<Channel<? extends E>> home = homes.get(worker);
+        long idle = MIN_IDLE;
+
+        while (open.get()) {
+            if (pass(home, action) || steal(worker, action)) {
+                idle = MIN_IDLE;
+                continue;
+            }
+
+            LockSupport.parkNanos(this, idle);
+            idle = Math.min(idle * 2, MAX_IDLE);
+        }
+    }
+
+    // one element per channel and pass, so a swamped tenant can't starve the others sharing the worker
+    private boolean pass(List<Channel<? extends E>> channels, Consumer<? super E> action) {
+        boolean worked = false;
+
+        for (Channel<? extends E> channel : channels) {
+            if (!open.get()) {
+                break;
+            }
+
+            worked |= receive(channels, channel, action);
+        }
+
+        return worked;
+    }
+
+    private boolean steal(int worker, Consumer<? super E> action) {
+        int start = ThreadLocalRandom.current().nextInt(homes.size());
+
+        for (int i = 0; i < homes.size(); i++) {
+            int victim = (start + i) % homes.size();
+
+            if (victim == worker) {
+                continue;
+            }
+
+            List<Channel<? extends E>> channels = homes.get(victim);
+
+            for (Channel<? extends E> channel : channels) {
+                if (!open.get()) {
+                    return false;
+                }
+
+                if (receive(channels, channel, action)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private boolean receive(List<Channel<? extends E>> channels, Channel<? extends E> channel, Consumer<? super E> action) {
+        Received<? extends E> received = channel.tryReceive();
+
+        switch (received.status()) {
+            case OK:
+                // a failing element is reported like an uncaught exception, but the worker stays for the rest of its channels
+                try {
+                    action.accept(received.value());
+                } catch (RuntimeException ex) {
+                    Thread current = Thread.currentThread();
+                    current.getUncaughtExceptionHandler().uncaughtException(current, ex);
+                }
+                return true;
+
+            case CLOSED:
+                channels.remove(channel);
+                return false;
+
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.github.adamluzsi.csp;
+
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.testng.Assert.*;
+
+public class ChannelGroupTest {
+    private ExecutorService e = Executors.newCachedThreadPool();
+
+    @Test
+    public void testConsume_ManyChannelsFewWorkers_EveryElementProcessedAndClosedChannelsDetached() throws Exception {
+        ChannelGroup<Integer> subject = new ChannelGroup<>(2);
+        List<Channel<Integer>> channels = new ArrayList<>();
+        Set<Integer> received = ConcurrentHashMap.newKeySet();
+
+        for (int i = 0; i < 10; i++) {
+            Channel<Integer> channel = new Channel<>(16);
+            channels.add(channel);
+            subject.register(channel);
+        }
+
+        assertEquals(subject.size(), 10);
+        WaitGroup wg = subject.consume(received::add);
+
+        for (int i = 0; i < 100; i++) {
+            channels.get(i % 10).put(i);
+        }
+
+        for (int i = 0; i < 100 && received.size() < 100; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(received.size(), 100);
+
+        for (Channel<Integer> channel : channels) {
+            channel.close();
+        }
+
+        for (int i = 0; i < 100 && subject.size() > 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(subject.size(), 0);
+
+        subject.close();
+        e.submit(() -> {
+            wg.hold();
+            return null;
+        }).get(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testConsume_HomeWorkerIsBusy_IdleWorkerStealsFromItsChannel() throws Exception {
+        ChannelGroup<String> subject = new ChannelGroup<>(2);
+        Channel<String> busy = new Channel<>(4);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch stolen = new CountDownLatch(1);
+
+        subject.register(busy);
+        subject.register(new Channel<>(4));
+
+        subject.consume((s) -> {
+            if (s.equals("slow")) {
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            } else {
+                stolen.countDown();
+            }
+        });
+
+        busy.put("slow");
+        Thread.sleep(50);
+        busy.put("fast");
+
+        assertTrue(stolen.await(1, TimeUnit.SECONDS));
+
+        release.countDown();
+        subject.close();
+    }
+
+    @Test
+    public void testConsume_OneChannelSwamped_OtherChannelServedWithinTheFirstPass() throws Exception {
+        ChannelGroup<String> subject = new ChannelGroup<>(1);
+        Channel<String> swamped = new Channel<>(100);
+        Channel<String> quiet = new Channel<>(1);
+        List<String> received = new CopyOnWriteArrayList<>();
+
+        subject.register(swamped);
+        subject.register(quiet);
+
+        for (int i = 0; i < 100; i++) {
+            swamped.put("swamped");
+        }
+        quiet.put("quiet");
+
+        subject.consume(received::add);
+
+        for (int i = 0; i < 100 && received.size() < 101; i++) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(received.size(), 101);
+        assertTrue(received.indexOf("quiet") < 2);
+        subject.close();
+    }
+
+    @Test
+    public void testConsume_ActionThrows_WorkerKeepsConsumingLaterElements() throws Exception {
+        ChannelGroup<Integer> subject = new ChannelGroup<>(1);
+        Channel<Integer> channel = new Channel<>(4);
+        List<Integer> received = new CopyOnWriteArrayList<>();
+
+        subject.register(channel);
+        WaitGroup wg = subject.consume((i) -> {
+            if (i == 0) {
+                throw new IllegalStateException("expected failure of element 0");
+            }
+
+            received.add(i);
+        });
+
+        for (int i = 0; i < 3; i++) {
+            channel.put(i);
+        }
+
+        for (int i = 0; i < 100 && received.size() < 2; i++) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(received, Arrays.asList(1, 2));
+        assertEquals(wg.size(), 1);
+        subject.close();
+    }
+
+    @Test
+    public void testClose_GroupClosedTwice_ExceptionThrownAndRegisterRejected() throws Exception {
+        ChannelGroup<String> subject = new ChannelGroup<>(1);
+
+        subject.close();
+
+        assertThrows(IOException.class, subject::close);
+        assertThrows(IllegalStateException.class, () -> subject.register(new Channel<>()));
+    }
+
+    @Test
+    public void testConstructor_NoWorkers_ExceptionThrown() {
+        assertThrows(IllegalArgumentException.class, () -> new ChannelGroup<String>(0));
+    }
+}
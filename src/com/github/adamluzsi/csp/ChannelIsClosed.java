@@ -4,4 +4,15 @@ public class ChannelIsClosed extends InterruptedException {
     ChannelIsClosed() {
         super("cannot transfer new element in a closed channel");
     }
+
+    ChannelIsClosed(Throwable cause) {
+        this();
+        initCause(cause);
+    }
+
+    // closing is an expected end of stream, not a bug, so the stack walk is not worth its cost
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
 }
\ No newline at end of file
@@ -17,4 +17,9 @@ public class ChannelIsClosedTest {
         }
     }
 
+    @Test
+    public void ChannelIsClosed_Created_NoStackTraceCaptured() {
+        assertEquals(new ChannelIsClosed().getStackTrace().length, 0);
+    }
+
 }
\ No newline at end of file
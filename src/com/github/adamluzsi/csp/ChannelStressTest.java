@@ -0,0 +1,296 @@
+package com.github.adamluzsi.csp;
+
+import org.testng.Reporter;
+import org.testng.SkipException;
+import org.testng.annotations.Test;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.testng.Assert.*;
+
+// randomized interleavings, rerun a failing case with -Dcsp.stress.seed=<seed from the message>
+public class ChannelStressTest {
+    private static final long SEED = Long.getLong("csp.stress.seed", System.nanoTime());
+    private static final int ROUNDS = Integer.getInteger("csp.stress.rounds", 20);
+    private static final long STUCK = TimeUnit.SECONDS.toMillis(10);
+
+    private ExecutorService e = Executors.newCachedThreadPool();
+
+    @Test
+    public void testPutAndTake_RandomProducersConsumersAndCapacity_EveryElementReceivedExactlyOnce() throws Exception {
+        Random random = new Random(SEED);
+
+        for (int round = 0; round < ROUNDS; round++) {
+            int capacity = random.nextInt(3) == 0 ? 0 : 1 + random.nextInt(16);
+            int producers = 1 + random.nextInt(4);
+            int consumers = 1 + random.nextInt(4);
+            int perProducer = 1 + random.nextInt(2000);
+            String context = String.format("seed=%d round=%d capacity=%d producers=%d consumers=%d",
+                    SEED, round, capacity, producers, consumers);
+
+            Channel<Integer> channel = new Channel<>(capacity);
+            AtomicIntegerArray counts = new AtomicIntegerArray(producers * perProducer);
+            AtomicInteger received = new AtomicInteger();
+            List<Future<?>> consuming = new ArrayList<>();
+            List<Future<?>> producing = new ArrayList<>();
+
+            for (int c = 0; c < consumers; c++) {
+                consuming.add(e.submit(() -> channel.forEach((i) -> {
+                    counts.incrementAndGet(i);
+                    received.incrementAndGet();
+                })));
+            }
+
+            for (int p = 0; p < producers; p++) {
+                int offset = p * perProducer;
+
+                producing.add(e.submit(() -> {
+                    for (int i = offset; i < offset + perProducer; i++) {
+                        channel.put(i);
+                    }
+                    return null;
+                }));
+            }
+
+            join(producing, context);
+            for (long deadline = System.currentTimeMillis() + STUCK; received.get() < counts.length(); ) {
+                assertTrue(System.currentTimeMillis() < deadline, "elements lost: " + context);
+                Thread.sleep(1);
+            }
+
+            channel.close();
+            join(consuming, context);
+
+            for (int i = 0; i < counts.length(); i++) {
+                assertEquals(counts.get(i), 1, "element " + i + " not received exactly once: " + context);
+            }
+        }
+    }
+
+    @Test
+    public void testClose_RacingWithMixedSendAndReceiveOperations_NoDuplicatesNoPhantomsNoStuckThreads() throws Exception {
+        Random random = new Random(SEED);
+
+        for (int round = 0; round < ROUNDS; round++) {
+            int capacity = random.nextInt(3) == 0 ? 0 : 1 + random.nextInt(8);
+            int producers = 1 + random.nextInt(4);
+            int consumers = 1 + random.nextInt(4);
+            long closeAfter = random.nextInt(20);
+            long seed = random.nextLong();
+            String context = String.format("seed=%d round=%d capacity=%d producers=%d consumers=%d closeAfter=%dms",
+                    SEED, round, capacity, producers, consumers, closeAfter);
+
+            Channel<Integer> channel = new Channel<>(capacity);
+            Set<Integer> sent = ConcurrentHashMap.newKeySet();
+            List<Integer> taken = Collections.synchronizedList(new ArrayList<>());
+            List<Future<?>> futures = new ArrayList<>();
+
+            for (int p = 0; p < producers; p++) {
+                Random ops = new Random(seed + p);
+                int offset = p * 10_000_000;
+
+                futures.add(e.submit(() -> {
+                    for (int i = offset; channel.isOpen(); i++) {
+                        try {
+                            if (send(channel, i, ops.nextInt(3))) {
+                                sent.add(i);
+                            }
+                        } catch (ChannelIsClosed ex) {
+                            return null;
+                        }
+                    }
+                    return null;
+                }));
+            }
+
+            for (int c = 0; c < consumers; c++) {
+                Random ops = new Random(seed - c - 1);
+
+                futures.add(e.submit(() -> {
+                    while (channel.isOpen()) {
+                        try {
+                            Integer i = receive(channel, ops.nextInt(4));
+                            if (i != null) {
+                                taken.add(i);
+                            }
+                        } catch (ChannelIsClosed ex) {
+                            return null;
+                        }
+                    }
+                    return null;
+                }));
+            }
+
+            Thread.sleep(closeAfter);
+            channel.close();
+            join(futures, context);
+
+            Set<Integer> unique = new HashSet<>(taken);
+            assertEquals(unique.size(), taken.size(), "duplicated elements: " + context);
+            assertTrue(sent.containsAll(unique), "received elements that were never sent: " + context);
+        }
+    }
+
+    @Test
+    public void testAdd_ConcurrentDoneCallsRaceForTheLastCount_CounterNeverGoesNegative() throws Exception {
+        Random random = new Random(SEED);
+
+        for (int round = 0; round < ROUNDS * 10; round++) {
+            int count = 1 + random.nextInt(4);
+            String context = String.format("seed=%d round=%d count=%d", SEED, round, count);
+
+            WaitGroup wg = new WaitGroup();
+            wg.add(count);
+
+            CyclicBarrier start = new CyclicBarrier(count + 1);
+            AtomicInteger rejected = new AtomicInteger();
+            List<Future<?>> futures = new ArrayList<>();
+
+            for (int i = 0; i < count + 1; i++) {
+                futures.add(e.submit(() -> {
+                    start.await();
+                    try {
+                        wg.done();
+                    } catch (IllegalArgumentException ex) {
+                        rejected.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+
+            join(futures, context);
+
+            assertEquals(rejected.get(), 1, context);
+            assertEquals(wg.size(), 0, context);
+        }
+    }
+
+    // off by default, enable with -Dcsp.soak.seconds=N and keep baselines with -Dcsp.soak.baseline=<file>
+    @Test
+    public void testSoak_SustainedLoad_ThroughputAndLatencyWithinBaseline() throws Exception {
+        long seconds = Long.getLong("csp.soak.seconds", 0);
+        if (seconds <= 0) {
+            throw new SkipException("soak test disabled, enable it with -Dcsp.soak.seconds=N");
+        }
+
+        Channel<Integer> channel = new Channel<>(64);
+        LatencyHistogram latency = channel.measureLatency();
+        LongAdder received = new LongAdder();
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int i = 0; i < 2; i++) {
+            futures.add(e.submit(() -> channel.forEach((n) -> received.increment())));
+            futures.add(e.submit(() -> {
+                try {
+                    for (int n = 0; ; n++) {
+                        channel.put(n);
+                    }
+                } catch (ChannelIsClosed ex) {
+                    return null;
+                }
+            }));
+        }
+
+        // the warm-up lets the JIT settle, so only steady-state numbers end up in the baseline
+        Thread.sleep(TimeUnit.SECONDS.toMillis(Math.max(1, Math.min(5, seconds / 5))));
+        received.reset();
+        latency.reset();
+
+        Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+        channel.close();
+        join(futures, "soak");
+
+        Properties measured = new Properties();
+        measured.setProperty("throughput", Long.toString(received.sum() / seconds));
+        measured.setProperty("p99", Long.toString(latency.snapshot().percentile(99)));
+        Reporter.log("soak: " + measured);
+
+        String baseline = System.getProperty("csp.soak.baseline");
+        if (baseline == null) {
+            return;
+        }
+
+        Path path = Paths.get(baseline);
+        if (!Files.exists(path) || Boolean.getBoolean("csp.soak.record")) {
+            try (OutputStream out = Files.newOutputStream(path)) {
+                measured.store(out, "channel soak baseline");
+            }
+            return;
+        }
+
+        Properties expected = new Properties();
+        try (InputStream in = Files.newInputStream(path)) {
+            expected.load(in);
+        }
+
+        double tolerance = Double.parseDouble(System.getProperty("csp.soak.tolerance", "0.2"));
+        long throughput = Long.parseLong(measured.getProperty("throughput"));
+        long p99 = Long.parseLong(measured.getProperty("p99"));
+
+        assertTrue(throughput >= Long.parseLong(expected.getProperty("throughput")) * (1 - tolerance),
+                "throughput regressed: " + measured + " against " + expected);
+        assertTrue(p99 <= Long.parseLong(expected.getProperty("p99")) * (1 + tolerance),
+                "p99 latency regressed: " + measured + " against " + expected);
+    }
+
+    private static boolean send(Channel<Integer> channel, int i, int op) throws InterruptedException {
+        switch (op) {
+            case 0:
+                channel.put(i);
+                return true;
+
+            case 1:
+                return channel.offer(i, 1, TimeUnit.MILLISECONDS);
+
+            default:
+                Status status = channel.trySend(i);
+                if (status == Status.CLOSED) {
+                    throw new ChannelIsClosed();
+                }
+                return status == Status.OK;
+        }
+    }
+
+    private static Integer receive(Channel<Integer> channel, int op) throws InterruptedException {
+        switch (op) {
+            case 0:
+                return channel.take();
+
+            case 1:
+                return channel.poll(1, TimeUnit.MILLISECONDS);
+
+            case 2:
+                Received<Integer> received = channel.receive();
+                if (received.closed()) {
+                    throw new ChannelIsClosed();
+                }
+                return received.value();
+
+            default:
+                Received<Integer> polled = channel.tryReceive();
+                if (polled.closed()) {
+                    throw new ChannelIsClosed();
+                }
+                return polled.ok() ? polled.value() : null;
+        }
+    }
+
+    private static void join(List<Future<?>> futures, String context) throws Exception {
+        for (Future<?> future : futures) {
+            try {
+                future.get(STUCK, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException ex) {
+                fail("stuck thread: " + context);
+            }
+        }
+    }
+}
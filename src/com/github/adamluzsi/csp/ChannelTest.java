@@ -6,14 +6,19 @@ import java.io.IOException;
 import java.lang.reflect.Field;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import static org.testng.Assert.*;
 
 public class ChannelTest {
     private ExecutorService e = Executors.newWorkStealingPool();
+    // one thread per task, so blocking tests never depend on how many cores back the work-stealing pool
+    private ExecutorService background = Executors.newCachedThreadPool();
 
     @Test
     public void testClose_ChannelIsOpen_ChannelIsClosed() throws Exception {
@@ -24,6 +29,50 @@ public class ChannelTest {
         assertThrows(IOException.class, subject::close);
     }
 
+    @Test
+    public void testClose_ElementsStillBuffered_ReceiversDrainThemBeforeTheEnd() throws Exception {
+        Channel<String> subject = new Channel<>(8);
+        for (String s : Arrays.asList("a", "b", "c", "d", "e")) {
+            subject.put(s);
+        }
+
+        subject.close();
+
+        assertThrows(ChannelIsClosed.class, () -> subject.put("f"));
+        assertFalse(subject.offer("f"));
+        assertEquals(subject.size(), 5);
+        assertEquals(subject.take(), "a");
+        assertEquals(subject.poll(), "b");
+        assertEquals(subject.receive().value(), "c");
+        assertEquals(subject.poll(1, TimeUnit.SECONDS), "d");
+
+        List<String> rest = new ArrayList<>();
+        assertEquals(subject.drainTo(rest), 1);
+        assertEquals(rest, Arrays.asList("e"));
+
+        assertNull(subject.poll());
+        assertTrue(subject.receive().closed());
+        assertTrue(subject.tryReceive().closed());
+        assertThrows(ChannelIsClosed.class, subject::take);
+        assertThrows(ChannelIsClosed.class, () -> subject.poll(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testClose_ProducerPutsThenClosesWithTryWithResources_ConsumerReceivesEverything() throws Exception {
+        Channel<Integer> subject = new Channel<>(16);
+
+        try (Channel<Integer> channel = subject) {
+            for (int i = 0; i < 10; i++) {
+                channel.put(i);
+            }
+        }
+
+        List<Integer> received = new ArrayList<>();
+        subject.forEach(received::add);
+
+        assertEquals(received, IntStream.range(0, 10).boxed().collect(Collectors.toList()));
+    }
+
     @Test
     public void testStaticClose_ChannelIsOpen_ChannelIsClosed() {
         Channel<String> subject = new Channel<>();
@@ -69,6 +118,17 @@ public class ChannelTest {
         assertEquals(f.get(1, TimeUnit.SECONDS), expectedElement);
     }
 
+    @Test
+    public void testPut_BufferedChannelWithFreeCapacity_PutReturnsWithoutTaker() throws Exception {
+        Channel<String> subject = new Channel<>(2);
+
+        subject.put("a");
+        subject.put("b");
+
+        assertEquals(subject.take(), "a");
+        assertEquals(subject.take(), "b");
+    }
+
 
     @Test
     public void testPutAndTake_ChannelIsClosedAndValuePut_BotPutAndTakeFails() throws Exception {
@@ -177,6 +237,510 @@ public class ChannelTest {
     }
 
 
+    @Test
+    public void testReceive_ValuesPutThanChannelClosed_ValuesReceivedThenClosedStatusWithoutException() throws Exception {
+        Channel<Integer> subject = new Channel<>(2);
+
+        subject.put(1);
+        subject.put(2);
+
+        assertEquals(subject.receive().value(), Integer.valueOf(1));
+
+        Future<Received<Integer>> blocked = background.submit(() -> {
+            subject.receive();
+            return subject.receive();
+        });
+
+        Thread.sleep(50);
+        subject.close();
+
+        Received<Integer> received = blocked.get(1, TimeUnit.SECONDS);
+        assertTrue(received.closed());
+        assertEquals(received.status(), Status.CLOSED);
+        assertThrows(NoSuchElementException.class, received::value);
+        assertSame(subject.receive(), received);
+    }
+
+    @Test
+    public void testTryReceive_EmptyOpenThanClosedChannel_WouldBlockThenClosed() throws Exception {
+        Channel<Integer> subject = new Channel<>(1);
+
+        assertEquals(subject.tryReceive().status(), Status.WOULD_BLOCK);
+
+        subject.put(42);
+        Received<Integer> received = subject.tryReceive();
+        assertTrue(received.ok());
+        assertEquals(received.value(), Integer.valueOf(42));
+
+        subject.close();
+        assertEquals(subject.tryReceive().status(), Status.CLOSED);
+    }
+
+    @Test
+    public void testTrySend_FullOpenThanClosedChannel_OkWouldBlockThenClosed() throws Exception {
+        Channel<Integer> subject = new Channel<>(1);
+
+        assertEquals(subject.trySend(1), Status.OK);
+        assertEquals(subject.trySend(2), Status.WOULD_BLOCK);
+
+        subject.close();
+        assertEquals(subject.trySend(3), Status.CLOSED);
+    }
+
+    @Test
+    public void testGenerate_ConsumerTakesFewThanCloses_OnlyTakenItemsAreProduced() throws Exception {
+        AtomicInteger produced = new AtomicInteger();
+        Channel<Integer> subject = Channel.generate(produced::incrementAndGet);
+
+        Thread.sleep(50);
+        assertEquals(produced.get(), 0);
+
+        for (int i = 1; i <= 3; i++) {
+            assertEquals(subject.take(), Integer.valueOf(i));
+        }
+
+        subject.close();
+        Thread.sleep(50);
+
+        assertEquals(produced.get(), 3);
+    }
+
+    @Test
+    public void testGenerate_BufferedGenerator_RunsAheadOnlyByCapacity() throws Exception {
+        AtomicInteger produced = new AtomicInteger();
+        Channel<Integer> subject = Channel.generate(2, produced::incrementAndGet);
+
+        Thread.sleep(50);
+        assertEquals(produced.get(), 2);
+
+        assertEquals(subject.take(), Integer.valueOf(1));
+        Thread.sleep(50);
+        assertEquals(produced.get(), 3);
+
+        subject.close();
+    }
+
+    @Test
+    public void testGenerate_GeneratorReturnsNull_BufferedItemsDeliveredThenChannelClosed() throws Exception {
+        Iterator<Integer> source = Arrays.asList(1, 2, 3, 4, 5).iterator();
+        Channel<Integer> subject = Channel.generate(4, () -> source.hasNext() ? source.next() : null);
+
+        Future<List<Integer>> fForEach = background.submit(() -> {
+            List<Integer> result = new ArrayList<>();
+            subject.forEach(result::add);
+            return result;
+        });
+
+        assertEquals(fForEach.get(1, TimeUnit.SECONDS), Arrays.asList(1, 2, 3, 4, 5));
+        assertThrows(ChannelIsClosed.class, subject::take);
+    }
+
+    @Test
+    public void testGenerate_GeneratorThrows_ItemsBeforeDeliveredThenConsumerSeesTheFailure() throws Exception {
+        Iterator<Integer> source = Arrays.asList(1, 2).iterator();
+        Channel<Integer> subject = Channel.generate(() -> {
+            if (!source.hasNext()) {
+                throw new IOException("page 3 unavailable");
+            }
+
+            return source.next();
+        });
+
+        List<Integer> received = new CopyOnWriteArrayList<>();
+        Future<?> fForEach = background.submit(() -> {
+            subject.forEach(received::add);
+            return null;
+        });
+
+        try {
+            fForEach.get(1, TimeUnit.SECONDS);
+            fail("forEach should report the failed generator");
+        } catch (ExecutionException ex) {
+            assertEquals(ex.getCause().getClass(), CompletionException.class);
+            assertEquals(ex.getCause().getCause().getClass(), IOException.class);
+        }
+
+        assertEquals(received, Arrays.asList(1, 2));
+        assertEquals(subject.failure().getClass(), IOException.class);
+    }
+
+    @Test
+    public void testGenerate_TimedPollsGiveUpWhileOthersTake_NoGeneratedItemLost() throws Exception {
+        Iterator<Integer> source = IntStream.range(0, 1000).iterator();
+        Channel<Integer> subject = Channel.generate(() -> {
+            Thread.sleep(0, 100_000);
+            return source.hasNext() ? source.next() : null;
+        });
+
+        List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+        ExecutorService consumers = Executors.newFixedThreadPool(2);
+        List<Future<?>> futures = new ArrayList<>();
+
+        futures.add(consumers.submit(() -> {
+            subject.forEach(received::add);
+            return null;
+        }));
+        futures.add(consumers.submit(() -> {
+            try {
+                while (true) {
+                    Integer e = subject.poll(100, TimeUnit.MICROSECONDS);
+                    if (e != null) {
+                        received.add(e);
+                    }
+                }
+            } catch (ChannelIsClosed ex) {
+                return null;
+            }
+        }));
+
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        consumers.shutdown();
+
+        List<Integer> sorted = new ArrayList<>(received);
+        Collections.sort(sorted);
+        assertEquals(sorted, IntStream.range(0, 1000).boxed().collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testGenerate_OnlyNonBlockingReceives_ItemsStillDelivered() throws Exception {
+        AtomicInteger produced = new AtomicInteger();
+        Channel<Integer> subject = Channel.generate(produced::incrementAndGet);
+
+        List<Integer> received = new ArrayList<>();
+        for (int i = 0; i < 1000 && received.size() < 3; i++) {
+            Received<Integer> r = subject.tryReceive();
+            if (r.ok()) {
+                received.add(r.value());
+            } else {
+                Thread.sleep(1);
+            }
+        }
+
+        assertEquals(received, Arrays.asList(1, 2, 3));
+        assertTrue(produced.get() <= 4);
+        subject.close();
+    }
+
+    @Test
+    public void testGenerate_ConsumerClosesWhileGeneratorWorks_GeneratorInterrupted() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+
+        Channel<Integer> subject = Channel.generate(() -> {
+            started.countDown();
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException ex) {
+                interrupted.countDown();
+                throw ex;
+            }
+            return 42;
+        });
+
+        Future<Received<Integer>> receiving = background.submit(subject::receive);
+
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        subject.close();
+
+        assertTrue(interrupted.await(1, TimeUnit.SECONDS));
+        assertTrue(receiving.get(1, TimeUnit.SECONDS).closed());
+    }
+
+    @Test
+    public void testInspection_BlockedProducersAndConsumers_ReportedWithoutRegistering() throws Exception {
+        Channel<Integer> subject = new Channel<>(1);
+
+        assertTrue(subject.isOpen());
+        assertEquals(subject.capacity(), 1);
+        assertEquals(new Channel<Integer>().capacity(), 0);
+
+        Future<Integer> consumer = background.submit(subject::take);
+        for (int i = 0; i < 100 && subject.waitingConsumers() == 0; i++) {
+            Thread.sleep(5);
+        }
+        assertEquals(subject.waitingConsumers(), 1);
+
+        subject.put(1);
+        assertEquals(consumer.get(1, TimeUnit.SECONDS), Integer.valueOf(1));
+        assertEquals(subject.waitingConsumers(), 0);
+
+        subject.put(2);
+        background.submit(() -> {
+            subject.put(3);
+            return null;
+        });
+        for (int i = 0; i < 100 && subject.waitingProducers() == 0; i++) {
+            Thread.sleep(5);
+        }
+        assertEquals(subject.waitingProducers(), 1);
+        assertEquals(subject.size(), 1);
+        assertEquals(subject.peek(), Integer.valueOf(2));
+
+        subject.close();
+        assertFalse(subject.isOpen());
+        assertEquals(subject.size(), 1);
+        for (int i = 0; i < 100 && subject.waitingProducers() > 0; i++) {
+            Thread.sleep(5);
+        }
+        assertEquals(subject.waitingProducers(), 0);
+    }
+
+    @Test
+    public void testWorkers_ValuesPutThanChannelClosed_EveryValueProcessedAndWorkersJoined() throws Exception {
+        Channel<Integer> subject = new Channel<>();
+        Set<Integer> processed = ConcurrentHashMap.newKeySet();
+
+        WaitGroup wg = subject.workers(1, 4, processed::add);
+
+        for (int i = 0; i < 100; i++) {
+            subject.put(i);
+        }
+
+        subject.close();
+
+        background.submit(() -> {
+            wg.hold();
+            return null;
+        }).get(1, TimeUnit.SECONDS);
+
+        assertEquals(processed.size(), 100);
+        assertEquals(wg.size(), 0);
+    }
+
+    @Test
+    public void testWorkers_BacklogGrows_PoolScalesUpAndRetiresIdleWorkersAfterKeepAlive() throws Exception {
+        Channel<Integer> subject = new Channel<>(16);
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+
+        WaitGroup wg = subject.workers(1, 4, 20, TimeUnit.MILLISECONDS, (i) -> {
+            threads.add(Thread.currentThread().getName());
+
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        for (int i = 0; i < 16; i++) {
+            subject.put(i);
+        }
+
+        Thread.sleep(300);
+
+        assertTrue(threads.size() > 1);
+        assertEquals(wg.size(), 1);
+
+        subject.close();
+    }
+
+    @Test
+    public void testWorkers_ActionThrows_WorkerKeepsProcessingLaterElements() throws Exception {
+        Channel<Integer> subject = new Channel<>();
+        List<Integer> processed = new CopyOnWriteArrayList<>();
+
+        WaitGroup wg = subject.workers(1, 1, (i) -> {
+            if (i == 0) {
+                throw new IllegalStateException("expected failure of element 0");
+            }
+
+            processed.add(i);
+        });
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(subject.offer(i, 1, TimeUnit.SECONDS), "element " + i + " not picked up");
+        }
+
+        for (long deadline = System.currentTimeMillis() + 1000; processed.size() < 2; ) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+
+        assertEquals(processed, Arrays.asList(1, 2));
+        assertEquals(wg.size(), 1);
+
+        subject.close();
+    }
+
+    @Test
+    public void testWorkers_InvalidBounds_ExceptionThrown() {
+        Channel<Integer> subject = new Channel<>();
+
+        assertThrows(IllegalArgumentException.class, () -> subject.workers(0, 1, System.out::println));
+        assertThrows(IllegalArgumentException.class, () -> subject.workers(2, 1, System.out::println));
+    }
+
+    @Test
+    public void testWindow_MoreValuesThanWindowSize_FullBatchesEmittedAndPartialBatchFlushedOnClose() throws Exception {
+        Channel<Integer> subject = new Channel<>(16);
+        Channel<List<Integer>> windows = subject.window(4, 1, TimeUnit.SECONDS);
+
+        Future<List<List<Integer>>> fbatches = background.submit(() -> {
+            List<List<Integer>> result = new ArrayList<>();
+            windows.forEach(result::add);
+            return result;
+        });
+
+        for (int i = 0; i < 10; i++) {
+            subject.put(i);
+        }
+
+        subject.close();
+
+        assertEquals(fbatches.get(1, TimeUnit.SECONDS), Arrays.asList(
+                Arrays.asList(0, 1, 2, 3),
+                Arrays.asList(4, 5, 6, 7),
+                Arrays.asList(8, 9)));
+    }
+
+    @Test
+    public void testWindow_DelayElapsesBeforeWindowFills_PartialBatchEmitted() throws Exception {
+        Channel<Integer> subject = new Channel<>();
+        Channel<List<Integer>> windows = subject.window(100, 20, TimeUnit.MILLISECONDS);
+
+        Future<List<Integer>> fbatch = background.submit(windows::take);
+
+        subject.put(1);
+        subject.put(2);
+
+        assertEquals(fbatch.get(1, TimeUnit.SECONDS), Arrays.asList(1, 2));
+
+        subject.close();
+    }
+
+    @Test
+    public void testWindow_InvalidSize_ExceptionThrown() {
+        Channel<Integer> subject = new Channel<>();
+
+        assertThrows(IllegalArgumentException.class, () -> subject.window(0, 1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testMapOrdered_TransformTakesRandomTime_ResultsEmittedInInputOrder() throws Exception {
+        Channel<Integer> subject = new Channel<>();
+        Channel<Integer> results = subject.mapOrdered((i) -> {
+            try {
+                Thread.sleep(ThreadLocalRandom.current().nextInt(5));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+
+            return i * 2;
+        }, 4, 8);
+
+        Future<List<Integer>> fresults = background.submit(() -> {
+            List<Integer> result = new ArrayList<>();
+            results.forEach(result::add);
+            return result;
+        });
+
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            subject.put(i);
+            expected.add(i * 2);
+        }
+
+        Thread.sleep(100);
+        subject.close();
+
+        assertEquals(fresults.get(1, TimeUnit.SECONDS), expected);
+    }
+
+    @Test
+    public void testMapOrdered_SlowTransform_RunsInParallel() throws Exception {
+        Channel<Integer> subject = new Channel<>();
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        Channel<Integer> results = subject.mapOrdered((i) -> {
+            threads.add(Thread.currentThread().getName());
+
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+
+            return i;
+        }, 4, 4);
+
+        background.submit(() -> {
+            for (int i = 0; i < 4; i++) {
+                subject.put(i);
+            }
+
+            return null;
+        });
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 4; i++) {
+            assertEquals(results.take(), Integer.valueOf(i));
+        }
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 200);
+        assertEquals(threads.size(), 4);
+
+        subject.close();
+    }
+
+    @Test
+    public void testMapOrdered_DownstreamClosesWhileReorderBufferIsFull_NoThreadLeftBehind() throws Exception {
+        Channel<Integer> subject = new Channel<>(6);
+        for (int i = 0; i < 6; i++) {
+            subject.put(i);
+        }
+
+        Channel<Integer> out = subject.mapOrdered((i) -> i, 1, 2);
+        Thread.sleep(50);
+        out.close();
+
+        for (int i = 0; i < 100 && mapOrderedThreads() > 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(mapOrderedThreads(), 0);
+    }
+
+    private static long mapOrderedThreads() {
+        return Thread.getAllStackTraces().values().stream()
+                .filter((frames) -> Arrays.stream(frames).anyMatch((f) -> f.getMethodName().startsWith("lambda$mapOrdered")))
+                .count();
+    }
+
+    @Test
+    public void testMapOrdered_TransformThrows_ConsumerSeesTheFailure() throws Exception {
+        Channel<Integer> subject = new Channel<>(4);
+        subject.put(1);
+        subject.put(0);
+        subject.put(2);
+
+        Channel<Integer> out = subject.mapOrdered((i) -> 10 / i, 2, 4);
+
+        // closing interrupts registered consumers, so the consumer runs on its own thread
+        background.submit(() -> {
+            assertEquals(out.take(), Integer.valueOf(10));
+
+            try {
+                out.take();
+                fail("take should report the failed transform");
+            } catch (ChannelIsClosed ex) {
+                assertEquals(ex.getCause().getClass(), ArithmeticException.class);
+            }
+            return null;
+        }).get(1, TimeUnit.SECONDS);
+
+        assertEquals(out.failure().getClass(), ArithmeticException.class);
+        assertThrows(CompletionException.class, () -> out.forEach((i) -> {
+        }));
+    }
+
+    @Test
+    public void testMapOrdered_InvalidBounds_ExceptionThrown() {
+        Channel<Integer> subject = new Channel<>();
+
+        assertThrows(IllegalArgumentException.class, () -> subject.mapOrdered((i) -> i, 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> subject.mapOrdered((i) -> i, 4, 2));
+    }
+
     @Test
     public void testToArray_OfferValuesInTheChannelThanCloseIt_ReceiveValuesAndBreakOnClosedChannel() throws Exception {
         Channel<Integer> subject = new Channel<>();
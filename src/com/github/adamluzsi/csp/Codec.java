@@ -0,0 +1,9 @@
+package com.github.adamluzsi.csp;
+
+import java.io.IOException;
+
+public interface Codec<E> {
+    byte[] encode(E e) throws IOException;
+
+    E decode(byte[] bytes) throws IOException;
+}
@@ -0,0 +1,140 @@
+package com.github.adamluzsi.csp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+public class ConflatingChannel<K, V> implements Closeable {
+    private LinkedHashMap<K, V> pending = new LinkedHashMap<>();
+    private final AtomicBoolean open = new AtomicBoolean(true);
+    private final ReentrantLock mutex = new ReentrantLock();
+    private final Condition dirty = mutex.newCondition();
+    private final LongAdder conflated = new LongAdder();
+
+    public void put(K key, V value) throws ChannelIsClosed {
+        mutex.lock();
+        try {
+            if (!open.get()) {
+                throw new ChannelIsClosed();
+            }
+
+            // an overwritten key keeps its place in line, so a hot key cannot starve the others,
+            // null values are allowed, so the key is looked up instead of trusting put's previous value
+            boolean overwritten = pending.containsKey(key);
+            pending.put(key, value);
+
+            if (overwritten) {
+                conflated.increment();
+            } else {
+                dirty.signal();
+            }
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    public Map.Entry<K, V> take() throws InterruptedException {
+        mutex.lockInterruptibly();
+        try {
+            await();
+
+            return next();
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    public Map.Entry<K, V> poll() {
+        mutex.lock();
+        try {
+            if (pending.isEmpty()) {
+                return null;
+            }
+
+            return next();
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    public Map<K, V> takeAll() throws InterruptedException {
+        mutex.lockInterruptibly();
+        try {
+            await();
+
+            Map<K, V> all = pending;
+            pending = new LinkedHashMap<>();
+            return all;
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        try {
+            while (true) {
+                Map.Entry<K, V> entry = take();
+
+                action.accept(entry.getKey(), entry.getValue());
+            }
+        } catch (ChannelIsClosed e) {
+            // end of stream
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public int size() {
+        mutex.lock();
+        try {
+            return pending.size();
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    public long conflated() {
+        return conflated.sum();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!open.compareAndSet(true, false)) {
+            throw new IOException(new ChannelIsClosed());
+        }
+
+        // the latest values still pending are drained by the receivers, only then do they see the end
+        mutex.lock();
+        try {
+            dirty.signalAll();
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    private void await() throws InterruptedException {
+        while (open.get() && pending.isEmpty()) {
+            dirty.await();
+        }
+
+        if (pending.isEmpty()) {
+            throw new ChannelIsClosed();
+        }
+    }
+
+    private Map.Entry<K, V> next() {
+        Iterator<Map.Entry<K, V>> iterator = pending.entrySet().iterator();
+        Map.Entry<K, V> entry = new AbstractMap.SimpleImmutableEntry<>(iterator.next());
+        iterator.remove();
+
+        return entry;
+    }
+}
@@ -0,0 +1,122 @@
+package com.github.adamluzsi.csp;
+
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+
+import static org.testng.Assert.*;
+
+public class ConflatingChannelTest {
+    private ExecutorService e = Executors.newCachedThreadPool();
+
+    @Test
+    public void testPut_KeyUpdatedBeforeTake_OnlyLatestValueDelivered() throws Exception {
+        ConflatingChannel<String, Integer> subject = new ConflatingChannel<>();
+
+        for (int i = 0; i < 1000; i++) {
+            subject.put("EURUSD", i);
+        }
+
+        Map.Entry<String, Integer> entry = subject.take();
+
+        assertEquals(entry.getKey(), "EURUSD");
+        assertEquals(entry.getValue(), Integer.valueOf(999));
+        assertEquals(subject.conflated(), 999);
+        assertNull(subject.poll());
+    }
+
+    @Test
+    public void testTake_ManyDirtyKeys_KeysDeliveredInOrderTheyFirstBecameDirty() throws Exception {
+        ConflatingChannel<String, Integer> subject = new ConflatingChannel<>();
+
+        subject.put("a", 1);
+        subject.put("b", 1);
+        subject.put("a", 2);
+
+        assertEquals(subject.take().getKey(), "a");
+        assertEquals(subject.take().getKey(), "b");
+    }
+
+    @Test
+    public void testTakeAll_ManyDirtyKeys_LatestValuePerKeyReturnedAndPendingCleared() throws Exception {
+        ConflatingChannel<String, Integer> subject = new ConflatingChannel<>();
+
+        subject.put("a", 1);
+        subject.put("b", 1);
+        subject.put("a", 2);
+
+        Map<String, Integer> expected = new LinkedHashMap<>();
+        expected.put("a", 2);
+        expected.put("b", 1);
+
+        assertEquals(subject.takeAll(), expected);
+        assertEquals(subject.size(), 0);
+    }
+
+    @Test
+    public void testTake_NothingPendingThanPut_TakeUnblocks() throws Exception {
+        ConflatingChannel<String, Integer> subject = new ConflatingChannel<>();
+
+        Future<Map.Entry<String, Integer>> future = e.submit(subject::take);
+        Thread.sleep(20);
+        subject.put("a", 1);
+
+        assertEquals(future.get(1, TimeUnit.SECONDS).getValue(), Integer.valueOf(1));
+    }
+
+    @Test
+    public void testPut_NullValueOverwritten_CountedAsConflated() throws Exception {
+        ConflatingChannel<String, Integer> subject = new ConflatingChannel<>();
+
+        subject.put("a", null);
+        subject.put("a", null);
+        subject.put("a", 1);
+
+        assertEquals(subject.conflated(), 2);
+        assertEquals(subject.size(), 1);
+        assertEquals(subject.take().getValue(), Integer.valueOf(1));
+    }
+
+    @Test
+    public void testClose_ValuesPending_LatestValuesDrainedThenChannelIsClosed() throws Exception {
+        ConflatingChannel<String, Integer> subject = new ConflatingChannel<>();
+        subject.put("a", 1);
+        subject.put("b", 1);
+        subject.put("a", 2);
+
+        subject.close();
+
+        Map<String, Integer> received = new LinkedHashMap<>();
+        subject.forEach(received::put);
+
+        assertEquals(received.toString(), "{a=2, b=1}");
+        assertNull(subject.poll());
+        assertThrows(ChannelIsClosed.class, subject::take);
+    }
+
+    @Test
+    public void testClose_TakeBlocked_TakeFailsAndForEachReturns() throws Exception {
+        ConflatingChannel<String, Integer> subject = new ConflatingChannel<>();
+
+        Future<Map.Entry<String, Integer>> ftake = e.submit(subject::take);
+        Future<?> fforEach = e.submit(() -> subject.forEach((k, v) -> {
+        }));
+        Thread.sleep(20);
+        subject.close();
+
+        try {
+            ftake.get(1, TimeUnit.SECONDS);
+            fail("take should fail on a closed channel");
+        } catch (ExecutionException ex) {
+            assertEquals(ex.getCause().getClass(), ChannelIsClosed.class);
+        }
+
+        fforEach.get(1, TimeUnit.SECONDS);
+        assertThrows(ChannelIsClosed.class, () -> subject.put("a", 1));
+        assertThrows(IOException.class, subject::close);
+    }
+
+}
@@ -0,0 +1,125 @@
+package com.github.adamluzsi.csp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+public final class ContentionProfiler {
+    private static final int HISTORY = 256;
+
+    private final String label;
+    private final int sampleRate;
+    private final long threshold;
+    private final AtomicReferenceArray<BlockedOperation> history = new AtomicReferenceArray<>(HISTORY);
+    private final AtomicLong recorded = new AtomicLong();
+    private final Map<Thread, Waiting> waiting = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> counts = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> waits = new ConcurrentHashMap<>();
+
+    public ContentionProfiler(String label) {
+        this(label, 1, 1, TimeUnit.MILLISECONDS);
+    }
+
+    public ContentionProfiler(String label, int sampleRate, long threshold, TimeUnit unit) {
+        if (sampleRate < 1) {
+            throw new IllegalArgumentException("sample rate must be positive");
+        }
+
+        this.label = label;
+        this.sampleRate = sampleRate;
+        this.threshold = unit.toNanos(threshold);
+    }
+
+    public String label() {
+        return label;
+    }
+
+    public List<BlockedOperation> samples() {
+        long end = recorded.get();
+        List<BlockedOperation> samples = new ArrayList<>();
+
+        for (long i = Math.max(0, end - HISTORY); i < end; i++) {
+            BlockedOperation sample = history.get((int) (i % HISTORY));
+
+            if (sample != null) {
+                samples.add(sample);
+            }
+        }
+
+        return samples;
+    }
+
+    public List<BlockedOperation> blocked() {
+        long now = System.nanoTime();
+        List<BlockedOperation> blocked = new ArrayList<>();
+
+        waiting.forEach((thread, w) -> blocked.add(new BlockedOperation(label, w.operation, thread.getName(), now - w.since)));
+
+        return blocked;
+    }
+
+    public String dump() {
+        StringBuilder out = new StringBuilder("channel ").append(label).append('\n');
+
+        counts.forEach((operation, count) -> out.append(String.format("  %s: %d calls, %dus waited%n",
+                operation, count.sum(), TimeUnit.NANOSECONDS.toMicros(waits.get(operation).sum()))));
+
+        out.append("  blocked now:\n");
+        blocked().forEach((op) -> out.append("    ").append(op).append('\n'));
+
+        out.append("  recent samples:\n");
+        samples().forEach((op) -> out.append("    ").append(op).append('\n'));
+
+        return out.toString();
+    }
+
+    // unsampled operations run untouched, so every figure here, the call counts included, covers the sample only
+    Object record(String operation, Func<Object> fn) throws InterruptedException {
+        if (sampleRate > 1 && ThreadLocalRandom.current().nextInt(sampleRate) != 0) {
+            return fn.call();
+        }
+
+        Thread thread = Thread.currentThread();
+        long since = System.nanoTime();
+        ChannelBlockedEvent event = new ChannelBlockedEvent();
+        event.begin();
+
+        waiting.put(thread, new Waiting(operation, since));
+        try {
+            return fn.call();
+        } finally {
+            waiting.remove(thread);
+
+            long waited = System.nanoTime() - since;
+            waits.computeIfAbsent(operation, (k) -> new LongAdder()).add(waited);
+            counts.computeIfAbsent(operation, (k) -> new LongAdder()).increment();
+
+            if (waited >= threshold) {
+                history.set((int) (recorded.getAndIncrement() % HISTORY), new BlockedOperation(label, operation, thread.getName(), waited));
+
+                event.end();
+                if (event.shouldCommit()) {
+                    event.channel = label;
+                    event.operation = operation;
+                    event.commit();
+                }
+            }
+        }
+    }
+
+    private static class Waiting {
+        private final String operation;
+        private final long since;
+
+        private Waiting(String operation, long since) {
+            this.operation = operation;
+            this.since = since;
+        }
+    }
+}
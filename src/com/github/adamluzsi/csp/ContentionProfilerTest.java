@@ -0,0 +1,104 @@
+package com.github.adamluzsi.csp;
+
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.testng.Assert.*;
+
+public class ContentionProfilerTest {
+    private ExecutorService e = Executors.newCachedThreadPool();
+
+    @Test
+    public void testBlocked_ConsumerParkedOnTake_OperationReportedWithThread() throws Exception {
+        Channel<Integer> subject = new Channel<>();
+        ContentionProfiler profiler = subject.profile("orders");
+
+        Future<Integer> future = e.submit(() -> {
+            Thread.currentThread().setName("consumer");
+            return subject.take();
+        });
+
+        List<BlockedOperation> blocked = profiler.blocked();
+        for (int i = 0; i < 100 && blocked.isEmpty(); i++) {
+            Thread.sleep(10);
+            blocked = profiler.blocked();
+        }
+
+        assertEquals(blocked.size(), 1);
+        assertEquals(blocked.get(0).operation(), "take");
+        assertEquals(blocked.get(0).thread(), "consumer");
+        assertEquals(blocked.get(0).label(), "orders");
+        assertTrue(blocked.get(0).waitNanos() > 0);
+
+        subject.put(42);
+        assertEquals(future.get(1, TimeUnit.SECONDS), Integer.valueOf(42));
+
+        assertTrue(profiler.blocked().isEmpty());
+    }
+
+    @Test
+    public void testSamples_OperationWaitedLongerThanThreshold_SampleRecorded() throws Exception {
+        Channel<Integer> subject = new Channel<>();
+        ContentionProfiler profiler = subject.profile(new ContentionProfiler("events", 1, 10, TimeUnit.MILLISECONDS));
+
+        Future<Integer> future = e.submit(subject::take);
+        Thread.sleep(30);
+        subject.put(1);
+        future.get(1, TimeUnit.SECONDS);
+
+        BlockedOperation sample = profiler.samples().stream()
+                .filter((op) -> op.operation().equals("take"))
+                .findFirst()
+                .orElseThrow(AssertionError::new);
+        assertTrue(sample.waitNanos() >= TimeUnit.MILLISECONDS.toNanos(10));
+
+        assertTrue(profiler.dump().contains("events"));
+        assertTrue(profiler.dump().contains("take: 1 calls"));
+    }
+
+    @Test
+    public void testSamples_ClosedWhileBlocked_InterruptedOperationStillRecorded() throws Exception {
+        Channel<Integer> subject = new Channel<>();
+        ContentionProfiler profiler = subject.profile(new ContentionProfiler("closing", 1, 0, TimeUnit.MILLISECONDS));
+
+        Future<?> future = e.submit(() -> {
+            subject.put(1);
+            return null;
+        });
+        Thread.sleep(30);
+        subject.close();
+
+        assertThrows(ExecutionException.class, () -> future.get(1, TimeUnit.SECONDS));
+        assertEquals(profiler.samples().get(0).operation(), "put");
+    }
+
+    @Test
+    public void testRecord_SampleRateAboveOne_UnsampledOperationsNotCounted() throws Exception {
+        Channel<Integer> subject = new Channel<>(1000);
+        ContentionProfiler profiler = subject.profile(new ContentionProfiler("sampled", 1000, 0, TimeUnit.MILLISECONDS));
+
+        for (int i = 0; i < 100; i++) {
+            subject.put(i);
+        }
+
+        assertFalse(profiler.dump().contains("put: 100 calls"));
+        assertTrue(profiler.blocked().isEmpty());
+    }
+
+    @Test
+    public void testProfile_NoLabelGiven_CallSiteUsedAsLabel() {
+        Channel<Integer> subject = new Channel<>();
+
+        ContentionProfiler profiler = subject.profile();
+
+        assertTrue(profiler.label().startsWith(ContentionProfilerTest.class.getName()));
+    }
+
+    @Test
+    public void testConstructor_NonPositiveSampleRate_ExceptionThrown() {
+        assertThrows(IllegalArgumentException.class, () -> new ContentionProfiler("x", 0, 1, TimeUnit.MILLISECONDS));
+    }
+
+}
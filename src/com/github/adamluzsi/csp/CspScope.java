@@ -0,0 +1,134 @@
+package com.github.adamluzsi.csp;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+// close() waits for the processes like hold() does, so an interrupt while waiting is reported rather than swallowed
+@SuppressWarnings("try")
+public class CspScope implements AutoCloseable {
+    @FunctionalInterface
+    public interface Routine {
+        void run() throws Exception;
+    }
+
+    private final ThreadFactory threads;
+    private final WaitGroup wg = new WaitGroup();
+    private final List<Channel<?>> channels = new CopyOnWriteArrayList<>();
+    private final Set<Thread> processes = ConcurrentHashMap.newKeySet();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+
+    public CspScope() {
+        this(Threads.preferVirtual());
+    }
+
+    public CspScope(ThreadFactory threads) {
+        this.threads = threads;
+    }
+
+    public <E> Channel<E> channel() {
+        return own(new Channel<>());
+    }
+
+    public <E> Channel<E> channel(int capacity) {
+        return own(new Channel<>(capacity));
+    }
+
+    public <E> Channel<E> own(Channel<E> channel) {
+        channels.add(channel);
+
+        if (cancelled.get()) {
+            closeQuietly(channel);
+        }
+
+        return channel;
+    }
+
+    public void go(Routine routine) {
+        if (cancelled.get()) {
+            throw new IllegalStateException("scope is already closed");
+        }
+
+        wg.add(1);
+
+        Thread thread;
+        try {
+            thread = threads.newThread(() -> {
+                try {
+                    routine.run();
+                } catch (ChannelIsClosed ex) {
+                    // an owned channel was closed, which ends the process normally
+                } catch (InterruptedException ex) {
+                    if (!cancelled.get()) {
+                        fail(ex);
+                    }
+                } catch (Throwable t) {
+                    fail(t);
+                } finally {
+                    processes.remove(Thread.currentThread());
+                    wg.done();
+                }
+            });
+
+            processes.add(thread);
+            thread.start();
+        } catch (RuntimeException ex) {
+            wg.done();
+            throw ex;
+        }
+
+        // a process started while the scope was being cancelled would otherwise miss the interrupt
+        if (cancelled.get()) {
+            thread.interrupt();
+        }
+    }
+
+    public int size() {
+        return wg.size();
+    }
+
+    public void hold() throws InterruptedException {
+        wg.hold();
+    }
+
+    public void cancel() {
+        if (!cancelled.compareAndSet(false, true)) {
+            return;
+        }
+
+        channels.forEach(CspScope::closeQuietly);
+        processes.forEach(Thread::interrupt);
+    }
+
+    @Override
+    public void close() throws InterruptedException, ExecutionException {
+        cancel();
+        wg.hold();
+
+        Throwable t = failure.get();
+        if (t != null) {
+            throw new ExecutionException(t);
+        }
+    }
+
+    private void fail(Throwable t) {
+        if (failure.compareAndSet(null, t)) {
+            cancel();
+        }
+    }
+
+    private static void closeQuietly(Channel<?> channel) {
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            // already closed
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.github.adamluzsi.csp;
+
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.testng.Assert.*;
+
+public class CspScopeTest {
+    private ExecutorService e = Executors.newCachedThreadPool();
+
+    @Test
+    public void testClose_ProcessBlockedOnOwnedChannel_ChannelClosedAndProcessJoined() throws Exception {
+        List<Integer> received = new CopyOnWriteArrayList<>();
+        CspScope subject = new CspScope();
+        Channel<Integer> channel = subject.channel();
+
+        subject.go(() -> channel.forEach(received::add));
+        subject.go(() -> {
+            for (int i = 0; i < 3; i++) {
+                channel.put(i);
+            }
+        });
+
+        while (received.size() < 3) {
+            Thread.sleep(1);
+        }
+
+        e.submit(() -> {
+            subject.close();
+            return null;
+        }).get(1, TimeUnit.SECONDS);
+
+        assertEquals(subject.size(), 0);
+        assertThrows(ChannelIsClosed.class, () -> channel.put(42));
+    }
+
+    @Test
+    public void testClose_ProcessFailed_RemainingProcessesCancelledAndFailureRethrown() throws Exception {
+        CspScope subject = new CspScope();
+        Channel<Integer> channel = subject.channel();
+        CountDownLatch blocking = new CountDownLatch(1);
+
+        subject.go(() -> {
+            blocking.countDown();
+            Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+        });
+        subject.go(channel::take);
+
+        blocking.await();
+        subject.go(() -> {
+            throw new IllegalStateException("boom");
+        });
+
+        Future<Throwable> future = e.submit(() -> {
+            try {
+                subject.close();
+            } catch (ExecutionException ex) {
+                return ex.getCause();
+            }
+
+            return null;
+        });
+
+        Throwable cause = future.get(1, TimeUnit.SECONDS);
+        assertEquals(cause.getClass(), IllegalStateException.class);
+        assertEquals(cause.getMessage(), "boom");
+    }
+
+    @Test
+    public void testHold_ProcessesFinishOnTheirOwn_ReturnsWithoutCancelling() throws Exception {
+        CspScope subject = new CspScope();
+        Channel<Integer> channel = subject.channel(1);
+
+        subject.go(() -> channel.put(1));
+
+        e.submit(() -> {
+            subject.hold();
+            return null;
+        }).get(1, TimeUnit.SECONDS);
+
+        assertEquals(channel.take(), Integer.valueOf(1));
+        subject.close();
+    }
+
+    @Test
+    public void testGo_ScopeClosed_ExceptionThrown() throws Exception {
+        CspScope subject = new CspScope();
+        subject.close();
+
+        assertThrows(IllegalStateException.class, () -> subject.go(() -> {
+        }));
+    }
+
+    @Test
+    public void testOwn_ScopeAlreadyCancelled_ChannelClosedImmediately() throws Exception {
+        CspScope subject = new CspScope();
+        subject.cancel();
+
+        Channel<Integer> channel = subject.own(new Channel<>());
+
+        assertThrows(ChannelIsClosed.class, channel::take);
+    }
+
+}
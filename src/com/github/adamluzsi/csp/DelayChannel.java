@@ -0,0 +1,161 @@
+package com.github.adamluzsi.csp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class DelayChannel<E> implements Closeable {
+    private final PriorityQueue<Scheduled<E>> queue = new PriorityQueue<>();
+    private final ReentrantLock mutex = new ReentrantLock();
+    private final Condition available = mutex.newCondition();
+
+    // only the leader sleeps until the head's deadline, every other taker waits untimed behind it
+    private Thread leader;
+    private long sequence;
+    private boolean open = true;
+
+    public void put(E e) throws InterruptedException {
+        put(e, 0, TimeUnit.NANOSECONDS);
+    }
+
+    public void put(E e, long delay, TimeUnit unit) throws InterruptedException {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+
+        long deadline = System.nanoTime() + unit.toNanos(delay);
+
+        mutex.lockInterruptibly();
+        try {
+            if (!open) {
+                throw new ChannelIsClosed();
+            }
+
+            Scheduled<E> scheduled = new Scheduled<>(e, deadline, sequence++);
+            queue.add(scheduled);
+
+            // a new head moves the wake-up earlier, so the current leader has to give up its longer sleep
+            if (queue.peek() == scheduled) {
+                leader = null;
+                available.signal();
+            }
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    public E take() throws InterruptedException {
+        mutex.lockInterruptibly();
+        try {
+            while (true) {
+                // after close the receivers still wait out the scheduled elements, the end comes once none are left
+                if (!open && queue.isEmpty()) {
+                    throw new ChannelIsClosed();
+                }
+
+                Scheduled<E> head = queue.peek();
+                if (head == null) {
+                    available.await();
+                    continue;
+                }
+
+                long remaining = head.deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return queue.poll().value;
+                }
+
+                if (leader != null) {
+                    available.await();
+                    continue;
+                }
+
+                Thread current = Thread.currentThread();
+                leader = current;
+                try {
+                    available.awaitNanos(remaining);
+                } finally {
+                    if (leader == current) {
+                        leader = null;
+                    }
+                }
+            }
+        } finally {
+            if (!open && queue.isEmpty()) {
+                available.signalAll();
+            } else if (leader == null && !queue.isEmpty()) {
+                available.signal();
+            }
+
+            mutex.unlock();
+        }
+    }
+
+    public E poll() {
+        mutex.lock();
+        try {
+            Scheduled<E> head = queue.peek();
+            if (head == null || head.deadline - System.nanoTime() > 0) {
+                return null;
+            }
+
+            return queue.poll().value;
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    public Received<E> receive() throws InterruptedException {
+        try {
+            return Received.of(take());
+        } catch (ChannelIsClosed ex) {
+            return Received.end();
+        }
+    }
+
+    public int size() {
+        mutex.lock();
+        try {
+            return queue.size();
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        mutex.lock();
+        try {
+            if (!open) {
+                throw new IOException(new ChannelIsClosed());
+            }
+
+            open = false;
+            available.signalAll();
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    private static class Scheduled<E> implements Comparable<Scheduled<E>> {
+        private final E value;
+        private final long deadline;
+        private final long sequence;
+
+        private Scheduled(E value, long deadline, long sequence) {
+            this.value = value;
+            this.deadline = deadline;
+            this.sequence = sequence;
+        }
+
+        // equal deadlines keep insertion order
+        @Override
+        public int compareTo(Scheduled<E> other) {
+            int c = Long.compare(deadline - other.deadline, 0);
+
+            return c != 0 ? c : Long.compare(sequence, other.sequence);
+        }
+    }
+}
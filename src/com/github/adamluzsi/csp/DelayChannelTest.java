@@ -0,0 +1,99 @@
+package com.github.adamluzsi.csp;
+
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.testng.Assert.*;
+
+public class DelayChannelTest {
+    private ExecutorService e = Executors.newCachedThreadPool();
+
+    @Test
+    public void testTake_ElementsPutWithDifferentDelays_DeliveredInDeadlineOrder() throws Exception {
+        DelayChannel<String> subject = new DelayChannel<>();
+
+        subject.put("third", 90, TimeUnit.MILLISECONDS);
+        subject.put("first", 10, TimeUnit.MILLISECONDS);
+        subject.put("second", 50, TimeUnit.MILLISECONDS);
+
+        assertEquals(subject.take(), "first");
+        assertEquals(subject.take(), "second");
+        assertEquals(subject.take(), "third");
+    }
+
+    @Test
+    public void testTake_DelayNotElapsed_ElementInvisibleUntilDeadline() throws Exception {
+        DelayChannel<String> subject = new DelayChannel<>();
+
+        long start = System.nanoTime();
+        subject.put("later", 100, TimeUnit.MILLISECONDS);
+
+        assertNull(subject.poll());
+        assertEquals(subject.size(), 1);
+
+        assertEquals(subject.take(), "later");
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    @Test
+    public void testTake_EarlierElementPutWhileTakerSleeps_TakerWakesForTheNewHead() throws Exception {
+        DelayChannel<String> subject = new DelayChannel<>();
+        subject.put("late", 5, TimeUnit.SECONDS);
+
+        Future<String> taking = e.submit(subject::take);
+        Thread.sleep(50);
+
+        subject.put("early", 10, TimeUnit.MILLISECONDS);
+
+        assertEquals(taking.get(1, TimeUnit.SECONDS), "early");
+    }
+
+    @Test
+    public void testTake_SameDeadline_InsertionOrderKept() throws Exception {
+        DelayChannel<Integer> subject = new DelayChannel<>();
+
+        for (int i = 0; i < 100; i++) {
+            subject.put(i);
+        }
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(subject.take(), Integer.valueOf(i));
+        }
+    }
+
+    @Test
+    public void testClose_TakersWaiting_ScheduledElementDeliveredThenTakersAndLaterPutsGetChannelIsClosed() throws Exception {
+        DelayChannel<String> subject = new DelayChannel<>();
+        subject.put("pending", 100, TimeUnit.MILLISECONDS);
+
+        List<Future<Received<String>>> takers = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            takers.add(e.submit(subject::receive));
+        }
+
+        Thread.sleep(20);
+        subject.close();
+
+        List<String> values = new ArrayList<>();
+        int closed = 0;
+        for (Future<Received<String>> taker : takers) {
+            Received<String> received = taker.get(1, TimeUnit.SECONDS);
+
+            if (received.closed()) {
+                closed++;
+            } else {
+                values.add(received.value());
+            }
+        }
+
+        assertEquals(values, Arrays.asList("pending"));
+        assertEquals(closed, 2);
+
+        assertThrows(ChannelIsClosed.class, () -> subject.put("again"));
+        assertThrows(ChannelIsClosed.class, subject::take);
+        assertThrows(IOException.class, subject::close);
+    }
+}
@@ -0,0 +1,159 @@
+package com.github.adamluzsi.csp;
+
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+class EliminationQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+    private static final int SPINS = 128;
+
+    private final SynchronousQueue<E> central = new SynchronousQueue<>();
+    private final AtomicReferenceArray<Offer<E>> slots;
+
+    EliminationQueue(int width) {
+        if (width < 1) {
+            throw new IllegalArgumentException("elimination width must be positive");
+        }
+
+        this.slots = new AtomicReferenceArray<>(width);
+    }
+
+    @Override
+    public void put(E e) throws InterruptedException {
+        if (central.offer(e) || eliminate(e)) {
+            return;
+        }
+
+        // every put that misses in the side slots ends up here, so a taker parked in the central queue is never stranded
+        central.put(e);
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+        return central.offer(e) || eliminate(e) || central.offer(e, timeout, unit);
+    }
+
+    @Override
+    public boolean offer(E e) {
+        return central.offer(e);
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        E e = poll();
+
+        return e != null ? e : central.take();
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        E e = poll();
+
+        return e != null ? e : central.poll(timeout, unit);
+    }
+
+    @Override
+    public E poll() {
+        E e = central.poll();
+
+        return e != null ? e : scan();
+    }
+
+    @Override
+    public E peek() {
+        return null;
+    }
+
+    @Override
+    public int size() {
+        return 0;
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return 0;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return Collections.emptyIterator();
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        int n = 0;
+
+        for (E e; n < maxElements && (e = poll()) != null; n++) {
+            c.add(e);
+        }
+
+        return n;
+    }
+
+    private boolean eliminate(E e) throws InterruptedException {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+
+        int index = ThreadLocalRandom.current().nextInt(slots.length());
+        Offer<E> offer = new Offer<>(e);
+
+        if (!slots.compareAndSet(index, null, offer)) {
+            return false;
+        }
+
+        for (int i = 0; i < SPINS && slots.get(index) == offer; i++) {
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+
+            Thread.onSpinWait();
+        }
+
+        // withdrawing fails only if a taker already claimed the offer
+        if (slots.compareAndSet(index, offer, null)) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+
+            return false;
+        }
+
+        return true;
+    }
+
+    private E scan() {
+        int width = slots.length();
+        int start = ThreadLocalRandom.current().nextInt(width);
+
+        for (int i = 0; i < width; i++) {
+            int index = (start + i) % width;
+            Offer<E> offer = slots.get(index);
+
+            if (offer != null && slots.compareAndSet(index, offer, null)) {
+                return offer.item;
+            }
+        }
+
+        return null;
+    }
+
+    private static class Offer<E> {
+        private final E item;
+
+        private Offer(E item) {
+            this.item = item;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.github.adamluzsi.csp;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+
+import static org.testng.Assert.*;
+
+public class EliminationQueueTest {
+    private ExecutorService e = Executors.newCachedThreadPool();
+
+    @Test
+    public void testPutAndTake_ManyProducersAndConsumers_EveryElementDeliveredExactlyOnce() throws Exception {
+        Channel<Integer> subject = Channel.eliminating(4);
+        Set<Integer> received = ConcurrentHashMap.newKeySet();
+        List<Future<?>> futures = new ArrayList<>();
+        int pairs = 8;
+        int perProducer = 2000;
+
+        for (int p = 0; p < pairs; p++) {
+            int base = p * perProducer;
+
+            futures.add(e.submit(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    subject.put(base + i);
+                }
+
+                return null;
+            }));
+
+            futures.add(e.submit(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    assertTrue(received.add(subject.take()));
+                }
+
+                return null;
+            }));
+        }
+
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+
+        assertEquals(received.size(), pairs * perProducer);
+    }
+
+    @Test
+    public void testPut_NoConsumer_PutBlocksUntilTaken() throws Exception {
+        Channel<Integer> subject = Channel.eliminating(2);
+
+        Future<?> blocked = e.submit(() -> {
+            subject.put(1);
+            return null;
+        });
+
+        assertThrows(TimeoutException.class, () -> blocked.get(50, TimeUnit.MILLISECONDS));
+
+        assertEquals(subject.take(), Integer.valueOf(1));
+        blocked.get(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testClose_ProducersAndConsumersBlocked_AllObserveClose() throws Exception {
+        Channel<Integer> producing = Channel.eliminating(2);
+        Channel<Integer> consuming = Channel.eliminating(2);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int i = 0; i < 4; i++) {
+            futures.add(e.submit(() -> {
+                producing.put(1);
+                return null;
+            }));
+
+            futures.add(e.submit(consuming::take));
+        }
+
+        Thread.sleep(50);
+        producing.close();
+        consuming.close();
+
+        for (Future<?> future : futures) {
+            try {
+                future.get(1, TimeUnit.SECONDS);
+                fail("blocked operation must fail once the channel is closed");
+            } catch (ExecutionException ex) {
+                assertEquals(ex.getCause().getClass(), ChannelIsClosed.class);
+            }
+        }
+    }
+
+    @Test
+    public void testOffer_NoConsumerWaiting_OfferRejected() {
+        EliminationQueue<Integer> subject = new EliminationQueue<>(2);
+
+        assertFalse(subject.offer(1));
+        assertNull(subject.poll());
+        assertEquals(subject.size(), 0);
+    }
+
+    @Test
+    public void testConstructor_NonPositiveWidth_ExceptionThrown() {
+        assertThrows(IllegalArgumentException.class, () -> Channel.eliminating(0));
+    }
+
+}
@@ -0,0 +1,5 @@
+package com.github.adamluzsi.csp;
+
+interface Func<T> {
+    T call() throws InterruptedException;
+}
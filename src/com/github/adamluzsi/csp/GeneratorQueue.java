@@ -0,0 +1,193 @@
+package com.github.adamluzsi.csp;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+class GeneratorQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+    private final int capacity;
+    private final ArrayBlockingQueue<E> buffer;
+
+    // a buffered generator gets one permit per free slot, an unbuffered one a permit per waiting receiver
+    private final Semaphore demand;
+    private final AtomicBoolean polled = new AtomicBoolean();
+    private volatile boolean ended;
+
+    GeneratorQueue(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("generator capacity must not be negative");
+        }
+
+        this.capacity = capacity;
+        this.buffer = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.demand = new Semaphore(capacity);
+    }
+
+    void awaitDemand() throws InterruptedException {
+        demand.acquire();
+    }
+
+    void awaitDrained() throws InterruptedException {
+        ended = true;
+
+        synchronized (this) {
+            while (!buffer.isEmpty()) {
+                wait();
+            }
+        }
+    }
+
+    @Override
+    public boolean offer(E e) {
+        return produced(buffer.offer(e));
+    }
+
+    @Override
+    public void put(E e) throws InterruptedException {
+        buffer.put(e);
+        produced(true);
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+        return produced(buffer.offer(e, timeout, unit));
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        waiting();
+
+        E e;
+        try {
+            e = buffer.take();
+        } catch (InterruptedException ex) {
+            withdraw();
+            throw ex;
+        }
+
+        consumed(1);
+        return e;
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        waiting();
+
+        E e;
+        try {
+            e = buffer.poll(timeout, unit);
+        } catch (InterruptedException ex) {
+            withdraw();
+            throw ex;
+        }
+
+        if (e == null) {
+            withdraw();
+            return null;
+        }
+
+        consumed(1);
+        return e;
+    }
+
+    @Override
+    public E poll() {
+        E e = buffer.poll();
+        if (e != null) {
+            consumed(1);
+            return e;
+        }
+
+        // an untimed poll can't wait for the item, so it asks for one to be ready by a later poll, one request at a time
+        if (capacity == 0 && polled.compareAndSet(false, true)) {
+            demand.release();
+        }
+
+        return null;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (!buffer.remove(o)) {
+            return false;
+        }
+
+        consumed(1);
+        return true;
+    }
+
+    @Override
+    public E peek() {
+        return buffer.peek();
+    }
+
+    @Override
+    public int size() {
+        return buffer.size();
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return capacity == 0 ? 0 : buffer.remainingCapacity();
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return Collections.unmodifiableList(new ArrayList<>(buffer)).iterator();
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        int n = buffer.drainTo(c, maxElements);
+        if (n > 0) {
+            consumed(n);
+        }
+
+        return n;
+    }
+
+    private boolean produced(boolean added) {
+        if (added) {
+            polled.set(false);
+        }
+
+        return added;
+    }
+
+    private void waiting() {
+        if (capacity == 0) {
+            demand.release();
+        }
+    }
+
+    // if the generator already claimed the permit, its item lands in the buffer for the next receiver
+    private void withdraw() {
+        if (capacity == 0) {
+            demand.tryAcquire();
+        }
+    }
+
+    private void consumed(int n) {
+        if (capacity > 0) {
+            demand.release(n);
+        }
+
+        if (ended && buffer.isEmpty()) {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+}
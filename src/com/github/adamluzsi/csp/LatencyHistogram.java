@@ -0,0 +1,170 @@
+package com.github.adamluzsi.csp;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class LatencyHistogram implements LatencyHistogramMBean {
+    // every power of two is split into 2^SUB_BITS linear sub-buckets, which bounds the relative error to 25%
+    private static final int SUB_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = 64 * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong max = new AtomicLong();
+    private final boolean resetOnRead;
+
+    public LatencyHistogram() {
+        this(false);
+    }
+
+    public LatencyHistogram(boolean resetOnRead) {
+        this.resetOnRead = resetOnRead;
+    }
+
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+
+        buckets.incrementAndGet(index(value));
+
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // retry
+        }
+    }
+
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = resetOnRead ? buckets.getAndSet(i, 0) : buckets.get(i);
+        }
+
+        return new Snapshot(counts, resetOnRead ? max.getAndSet(0) : max.get());
+    }
+
+    public ObjectName register(String name) {
+        try {
+            ObjectName objectName = new ObjectName("com.github.adamluzsi.csp:type=Channel,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+
+            return objectName;
+        } catch (JMException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    @Override
+    public long getCount() {
+        return live().count();
+    }
+
+    @Override
+    public long getMax() {
+        return max.get();
+    }
+
+    @Override
+    public long get50thPercentile() {
+        return live().percentile(50);
+    }
+
+    @Override
+    public long get99thPercentile() {
+        return live().percentile(99);
+    }
+
+    @Override
+    public long get999thPercentile() {
+        return live().percentile(99.9);
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+
+        max.set(0);
+    }
+
+    // JMX attribute reads must not consume the data a reset-on-read snapshot is waiting for
+    private Snapshot live() {
+        long[] counts = new long[BUCKETS];
+
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+        }
+
+        return new Snapshot(counts, max.get());
+    }
+
+    static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    static long upperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+
+        int exponent = index / SUB_BUCKETS + SUB_BITS - 1;
+        int sub = index % SUB_BUCKETS;
+
+        return ((long) (SUB_BUCKETS + sub + 1) << (exponent - SUB_BITS)) - 1;
+    }
+
+    public static class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long max;
+
+        private Snapshot(long[] counts, long max) {
+            long total = 0;
+
+            for (long c : counts) {
+                total += c;
+            }
+
+            this.counts = counts;
+            this.count = total;
+            this.max = max;
+        }
+
+        public long count() {
+            return count;
+        }
+
+        public long max() {
+            return max;
+        }
+
+        public long percentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+
+            long rank = (long) Math.ceil(percentile / 100 * count);
+            long seen = 0;
+
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+
+                if (seen >= rank) {
+                    return Math.min(upperBound(i), max);
+                }
+            }
+
+            return max;
+        }
+    }
+}
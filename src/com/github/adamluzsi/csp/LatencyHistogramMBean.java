@@ -0,0 +1,15 @@
+package com.github.adamluzsi.csp;
+
+public interface LatencyHistogramMBean {
+    long getCount();
+
+    long getMax();
+
+    long get50thPercentile();
+
+    long get99thPercentile();
+
+    long get999thPercentile();
+
+    void reset();
+}
@@ -0,0 +1,177 @@
+package com.github.adamluzsi.csp;
+
+import org.testng.annotations.Test;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.testng.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testIndex_ValuesAcrossTheRange_UpperBoundOfBucketCoversValueWithinRelativeError() {
+        for (long value = 0; value < 1_000_000; value += 7) {
+            long upper = LatencyHistogram.upperBound(LatencyHistogram.index(value));
+
+            assertTrue(upper >= value, value + " > " + upper);
+            assertTrue(upper <= value + value / 4, value + " bucket too wide: " + upper);
+        }
+
+        assertTrue(LatencyHistogram.upperBound(LatencyHistogram.index(Long.MAX_VALUE)) >= Long.MAX_VALUE / 2);
+    }
+
+    @Test
+    public void testSnapshot_RecordedValues_PercentilesAndMaxReported() {
+        LatencyHistogram subject = new LatencyHistogram();
+
+        for (int i = 1; i <= 100; i++) {
+            subject.record(TimeUnit.MICROSECONDS.toNanos(i));
+        }
+
+        LatencyHistogram.Snapshot snapshot = subject.snapshot();
+
+        assertEquals(snapshot.count(), 100);
+        assertEquals(snapshot.max(), TimeUnit.MICROSECONDS.toNanos(100));
+        assertEquals(snapshot.percentile(50), 50_000, 12_500);
+        assertEquals(snapshot.percentile(99), 99_000, 25_000);
+        assertEquals(snapshot.percentile(100), TimeUnit.MICROSECONDS.toNanos(100));
+    }
+
+    @Test
+    public void testSnapshot_ResetOnRead_SecondSnapshotEmpty() {
+        LatencyHistogram subject = new LatencyHistogram(true);
+
+        subject.record(42);
+
+        assertEquals(subject.snapshot().count(), 1);
+        assertEquals(subject.snapshot().count(), 0);
+    }
+
+    @Test
+    public void testMeasureLatency_ElementSitsInBuffer_SojournTimeRecordedOnTake() throws Exception {
+        Channel<Integer> subject = new Channel<>(4);
+        LatencyHistogram histogram = subject.measureLatency();
+
+        subject.put(1);
+        subject.put(2);
+        Thread.sleep(20);
+        subject.take();
+        subject.drainTo(new ArrayList<>());
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(snapshot.count(), 2);
+        assertTrue(snapshot.percentile(50) >= TimeUnit.MILLISECONDS.toNanos(20));
+    }
+
+    @Test
+    public void testMeasureLatency_ElementsRejectedByOverflowPolicy_OnlyAdmittedElementsMeasured() throws Exception {
+        Channel<Integer> subject = new Channel<>(1, OverflowPolicy.dropNewest());
+        LatencyHistogram histogram = subject.measureLatency();
+
+        subject.put(1);
+        subject.put(2);
+        subject.offer(3);
+        Thread.sleep(20);
+        subject.take();
+
+        subject.put(4);
+        subject.take();
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(snapshot.count(), 2);
+        assertTrue(snapshot.percentile(50) < TimeUnit.MILLISECONDS.toNanos(20));
+        assertTrue(snapshot.max() >= TimeUnit.MILLISECONDS.toNanos(20));
+    }
+
+    @Test
+    public void testMeasureLatency_BulkRemovalAndAddAll_StampsStayAlignedWithElements() throws Exception {
+        Channel<Integer> subject = new Channel<>(8);
+        LatencyHistogram histogram = subject.measureLatency();
+
+        subject.put(1);
+        subject.put(2);
+        subject.put(3);
+        subject.put(4);
+        Thread.sleep(20);
+
+        assertTrue(subject.removeIf((i) -> i <= 2));
+        assertTrue(subject.removeAll(List.of(3)));
+        assertTrue(subject.addAll(List.of(5, 6)));
+        assertFalse(subject.retainAll(List.of(4, 5, 6)));
+        subject.drainTo(new ArrayList<>());
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(snapshot.count(), 3);
+        assertTrue(snapshot.percentile(50) < TimeUnit.MILLISECONDS.toNanos(20));
+        assertTrue(snapshot.max() >= TimeUnit.MILLISECONDS.toNanos(20));
+    }
+
+    @Test
+    public void testMeasureLatency_AfterOverloadWithRejectedPuts_QuietPutAndTakeMeasuredAsQuiet() throws Exception {
+        Channel<Integer> subject = new Channel<>(1, OverflowPolicy.dropNewest());
+        LatencyHistogram histogram = subject.measureLatency();
+        ExecutorService e = Executors.newCachedThreadPool();
+        AtomicBoolean overloaded = new AtomicBoolean(true);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int i = 0; i < 4; i++) {
+            futures.add(e.submit(() -> {
+                while (overloaded.get()) {
+                    subject.put(1);
+                    subject.offer(2, 10, TimeUnit.MICROSECONDS);
+                }
+                return null;
+            }));
+        }
+        futures.add(e.submit(() -> {
+            while (overloaded.get()) {
+                subject.poll();
+            }
+            return null;
+        }));
+
+        Thread.sleep(500);
+        overloaded.set(false);
+        for (Future<?> future : futures) {
+            future.get(1, TimeUnit.SECONDS);
+        }
+        e.shutdown();
+
+        subject.poll();
+        histogram.reset();
+
+        for (int i = 0; i < 10; i++) {
+            Thread.sleep(20);
+            subject.put(i);
+            subject.take();
+        }
+
+        assertTrue(histogram.snapshot().percentile(50) < TimeUnit.MILLISECONDS.toNanos(10),
+                "p50 " + histogram.snapshot().percentile(50) + "ns");
+    }
+
+    @Test
+    public void testRegister_HistogramRegisteredAsMBean_AttributesReadable() throws Exception {
+        LatencyHistogram subject = new LatencyHistogram(true);
+        subject.record(1000);
+
+        ObjectName name = subject.register("latency-test");
+
+        assertEquals(ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Count"), 1L);
+        assertEquals(ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Max"), 1000L);
+
+        // attribute reads never consume a reset-on-read snapshot
+        assertEquals(subject.snapshot().count(), 1);
+
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+    }
+
+}
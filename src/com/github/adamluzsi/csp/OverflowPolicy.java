@@ -0,0 +1,85 @@
+package com.github.adamluzsi.csp;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+public final class OverflowPolicy<E> {
+    private enum Strategy {BLOCK, DROP_NEWEST, DROP_OLDEST, REJECT}
+
+    private final Strategy strategy;
+    private final long timeout;
+    private final Consumer<? super E> onReject;
+
+    private OverflowPolicy(Strategy strategy, long timeout, Consumer<? super E> onReject) {
+        this.strategy = strategy;
+        this.timeout = timeout;
+        this.onReject = onReject;
+    }
+
+    public static <E> OverflowPolicy<E> block() {
+        return new OverflowPolicy<>(Strategy.BLOCK, -1, null);
+    }
+
+    public static <E> OverflowPolicy<E> block(long timeout, TimeUnit unit) {
+        return new OverflowPolicy<>(Strategy.BLOCK, unit.toNanos(timeout), null);
+    }
+
+    public static <E> OverflowPolicy<E> dropNewest() {
+        return new OverflowPolicy<>(Strategy.DROP_NEWEST, 0, null);
+    }
+
+    public static <E> OverflowPolicy<E> dropOldest() {
+        return new OverflowPolicy<>(Strategy.DROP_OLDEST, 0, null);
+    }
+
+    public static <E> OverflowPolicy<E> reject(Consumer<? super E> callback) {
+        return new OverflowPolicy<>(Strategy.REJECT, 0, callback);
+    }
+
+    boolean blocks() {
+        return strategy == Strategy.BLOCK && timeout < 0;
+    }
+
+    boolean evictsOldest() {
+        return strategy == Strategy.DROP_OLDEST;
+    }
+
+    // returns the number of elements discarded to resolve the overflow
+    int admit(BlockingQueue<E> queue, E e) throws InterruptedException {
+        switch (strategy) {
+            case BLOCK:
+                if (timeout < 0) {
+                    queue.put(e);
+                    return 0;
+                }
+
+                return queue.offer(e, timeout, TimeUnit.NANOSECONDS) ? 0 : 1;
+
+            case DROP_NEWEST:
+                return queue.offer(e) ? 0 : 1;
+
+            case DROP_OLDEST:
+                int evicted = 0;
+
+                while (!queue.offer(e)) {
+                    if (queue.poll() != null) {
+                        evicted++;
+                    }
+                }
+
+                return evicted;
+
+            case REJECT:
+                if (queue.offer(e)) {
+                    return 0;
+                }
+
+                onReject.accept(e);
+                return 1;
+
+            default:
+                throw new IllegalStateException();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.github.adamluzsi.csp;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.testng.Assert.*;
+
+public class OverflowPolicyTest {
+    private ExecutorService e = Executors.newCachedThreadPool();
+
+    @Test
+    public void testBlock_BufferFull_PutBlocksUntilSpaceFrees() throws Exception {
+        Channel<Integer> subject = new Channel<>(1, OverflowPolicy.block());
+
+        subject.put(1);
+
+        Future<?> blocked = e.submit(() -> {
+            subject.put(2);
+            return null;
+        });
+
+        assertThrows(TimeoutException.class, () -> blocked.get(50, TimeUnit.MILLISECONDS));
+
+        assertEquals(subject.take(), Integer.valueOf(1));
+        blocked.get(1, TimeUnit.SECONDS);
+        assertEquals(subject.take(), Integer.valueOf(2));
+        assertEquals(subject.dropped(), 0);
+    }
+
+    @Test
+    public void testBlockWithTimeout_BufferStaysFull_ElementDroppedAfterTimeout() throws Exception {
+        Channel<Integer> subject = new Channel<>(1, OverflowPolicy.block(10, TimeUnit.MILLISECONDS));
+
+        subject.put(1);
+        subject.put(2);
+
+        assertEquals(subject.dropped(), 1);
+        assertEquals(subject.take(), Integer.valueOf(1));
+    }
+
+    @Test
+    public void testDropNewest_BufferFull_NewElementsDiscarded() throws Exception {
+        Channel<Integer> subject = new Channel<>(2, OverflowPolicy.dropNewest());
+
+        for (int i = 0; i < 5; i++) {
+            subject.put(i);
+        }
+
+        assertEquals(subject.dropped(), 3);
+        assertEquals(subject.take(), Integer.valueOf(0));
+        assertEquals(subject.take(), Integer.valueOf(1));
+    }
+
+    @Test
+    public void testDropOldest_BufferFull_HeadEvictedAndNewElementAdmitted() throws Exception {
+        Channel<Integer> subject = new Channel<>(2, OverflowPolicy.dropOldest());
+
+        for (int i = 0; i < 5; i++) {
+            subject.put(i);
+        }
+
+        assertEquals(subject.dropped(), 3);
+        assertEquals(subject.take(), Integer.valueOf(3));
+        assertEquals(subject.take(), Integer.valueOf(4));
+    }
+
+    @Test
+    public void testReject_BufferFull_CallbackReceivesRejectedElements() throws Exception {
+        List<Integer> rejected = new ArrayList<>();
+        Channel<Integer> subject = new Channel<>(1, OverflowPolicy.reject(rejected::add));
+
+        subject.put(1);
+        subject.put(2);
+        subject.put(3);
+
+        assertEquals(rejected, Arrays.asList(2, 3));
+        assertEquals(subject.dropped(), 2);
+    }
+
+    @Test
+    public void testConstructor_NonBlockingPolicyOnUnbufferedChannel_ExceptionThrown() {
+        assertThrows(IllegalArgumentException.class, () -> new Channel<Integer>(0, OverflowPolicy.dropOldest()));
+    }
+
+    @Test
+    public void testPut_ChannelIsClosed_PolicyNotApplied() throws Exception {
+        List<Integer> rejected = new ArrayList<>();
+        Channel<Integer> subject = new Channel<>(1, OverflowPolicy.reject(rejected::add));
+
+        subject.close();
+
+        assertThrows(ChannelIsClosed.class, () -> subject.put(1));
+        assertTrue(rejected.isEmpty());
+    }
+
+}
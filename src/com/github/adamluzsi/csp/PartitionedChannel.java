@@ -0,0 +1,98 @@
+package com.github.adamluzsi.csp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+public class PartitionedChannel<K, E> implements Closeable {
+    private final List<Channel<E>> partitions;
+    private final Function<? super E, ? extends K> key;
+    private final AtomicBoolean open = new AtomicBoolean(true);
+
+    public PartitionedChannel(int partitions, Function<? super E, ? extends K> key) {
+        this(partitions, 0, key);
+    }
+
+    public PartitionedChannel(int partitions, int capacity, Function<? super E, ? extends K> key) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("at least one partition is required");
+        }
+
+        this.partitions = new ArrayList<>(partitions);
+        this.key = key;
+
+        for (int i = 0; i < partitions; i++) {
+            this.partitions.add(new Channel<>(capacity));
+        }
+    }
+
+    public void put(E e) throws InterruptedException {
+        partitions.get(partitionOf(key.apply(e))).put(e);
+    }
+
+    public int partitionOf(K k) {
+        int h = Objects.hashCode(k);
+
+        return Math.floorMod(h ^ (h >>> 16), partitions.size());
+    }
+
+    public Channel<E> partition(int index) {
+        return partitions.get(index);
+    }
+
+    public int partitions() {
+        return partitions.size();
+    }
+
+    public WaitGroup consume(Consumer<? super E> action) {
+        WaitGroup wg = new WaitGroup();
+
+        for (Channel<E> partition : partitions) {
+            wg.add(1);
+
+            Channel.go(() -> {
+                try {
+                    // a partition has exactly one consumer, so a failing element must not end it or its producers hang
+                    partition.forEach((e) -> {
+                        try {
+                            action.accept(e);
+                        } catch (RuntimeException ex) {
+                            Thread current = Thread.currentThread();
+                            current.getUncaughtExceptionHandler().uncaughtException(current, ex);
+                        }
+                    });
+                } finally {
+                    wg.done();
+                }
+            });
+        }
+
+        return wg;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!open.compareAndSet(true, false)) {
+            throw new IOException(new ChannelIsClosed());
+        }
+
+        IOException failure = null;
+
+        for (Channel<E> partition : partitions) {
+            try {
+                partition.close();
+            } catch (IOException ex) {
+                failure = ex;
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
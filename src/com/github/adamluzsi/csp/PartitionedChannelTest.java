@@ -0,0 +1,111 @@
+package com.github.adamluzsi.csp;
+
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.testng.Assert.*;
+
+public class PartitionedChannelTest {
+    private ExecutorService e = Executors.newCachedThreadPool();
+
+    @Test
+    public void testConsume_ElementsOfManyKeys_OrderPreservedPerKey() throws Exception {
+        PartitionedChannel<Integer, int[]> subject = new PartitionedChannel<>(4, 8, (pair) -> pair[0]);
+        Map<Integer, List<Integer>> received = new ConcurrentHashMap<>();
+
+        WaitGroup wg = subject.consume((pair) -> received.computeIfAbsent(pair[0], (k) -> new CopyOnWriteArrayList<>()).add(pair[1]));
+
+        for (int seq = 0; seq < 50; seq++) {
+            for (int key = 0; key < 10; key++) {
+                subject.put(new int[]{key, seq});
+            }
+        }
+
+        // the partition consumers drain their backlog before they see the end
+        subject.close();
+
+        e.submit(() -> {
+            wg.hold();
+            return null;
+        }).get(1, TimeUnit.SECONDS);
+
+        assertEquals(received.size(), 10);
+        for (List<Integer> values : received.values()) {
+            for (int seq = 0; seq < 50; seq++) {
+                assertEquals(values.get(seq), Integer.valueOf(seq));
+            }
+        }
+    }
+
+    @Test
+    public void testPut_SameKey_AlwaysRoutedToSamePartition() throws Exception {
+        PartitionedChannel<String, String> subject = new PartitionedChannel<>(3, 4, (s) -> s.substring(0, 1));
+
+        subject.put("a1");
+        subject.put("a2");
+
+        Channel<String> partition = subject.partition(subject.partitionOf("a"));
+        assertEquals(partition.take(), "a1");
+        assertEquals(partition.take(), "a2");
+    }
+
+    @Test
+    public void testClose_ConsumersRunning_EveryPartitionClosedAndConsumersReturn() throws Exception {
+        PartitionedChannel<Integer, Integer> subject = new PartitionedChannel<>(4, (i) -> i);
+
+        WaitGroup wg = subject.consume((i) -> {
+        });
+        subject.close();
+
+        e.submit(() -> {
+            wg.hold();
+            return null;
+        }).get(1, TimeUnit.SECONDS);
+
+        for (int i = 0; i < subject.partitions(); i++) {
+            int index = i;
+            assertThrows(ChannelIsClosed.class, () -> subject.partition(index).take());
+        }
+        assertThrows(IOException.class, subject::close);
+        assertThrows(ChannelIsClosed.class, () -> subject.put(1));
+    }
+
+    @Test
+    public void testConsume_ActionThrows_PartitionKeepsConsumingAndProducersDoNotHang() throws Exception {
+        PartitionedChannel<Integer, Integer> subject = new PartitionedChannel<>(1, (i) -> i);
+        List<Integer> received = new CopyOnWriteArrayList<>();
+
+        WaitGroup wg = subject.consume((i) -> {
+            if (i == 0) {
+                throw new IllegalStateException("expected failure of element 0");
+            }
+
+            received.add(i);
+        });
+
+        e.submit(() -> {
+            for (int i = 0; i < 3; i++) {
+                subject.put(i);
+            }
+            return null;
+        }).get(1, TimeUnit.SECONDS);
+
+        for (long deadline = System.currentTimeMillis() + 1000; received.size() < 2; ) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+
+        assertEquals(received, Arrays.asList(1, 2));
+        assertEquals(wg.size(), 1);
+        subject.close();
+    }
+
+    @Test
+    public void testConstructor_NoPartitions_ExceptionThrown() {
+        assertThrows(IllegalArgumentException.class, () -> new PartitionedChannel<Integer, Integer>(0, (i) -> i));
+    }
+
+}
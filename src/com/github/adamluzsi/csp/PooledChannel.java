@@ -0,0 +1,117 @@
+package com.github.adamluzsi.csp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+public class PooledChannel<E> implements Closeable {
+    private final Channel<E> data;
+    private final Channel<E> free;
+    private final Supplier<? extends E> factory;
+    private final int poolSize;
+    private final AtomicInteger created = new AtomicInteger();
+    // instances sitting in the free list, tracked by identity so a second release of the same one is caught
+    private final Set<E> idle = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final AtomicBoolean open = new AtomicBoolean(true);
+
+    public PooledChannel(int poolSize, Supplier<? extends E> factory) {
+        if (poolSize < 1) {
+            throw new IllegalArgumentException("pool size must be positive");
+        }
+
+        // every element in flight came from the pool, so the data channel never holds more than the pool size
+        this.data = new Channel<>(poolSize);
+        this.free = new Channel<>(poolSize);
+        this.factory = factory;
+        this.poolSize = poolSize;
+    }
+
+    public E acquire() throws InterruptedException {
+        E e = free.poll();
+        if (e != null) {
+            return reused(e);
+        }
+
+        int n;
+        do {
+            n = created.get();
+
+            // the pool is fully allocated, so waiting for a release is the backpressure on producers
+            if (n >= poolSize) {
+                return reused(free.take());
+            }
+        } while (!created.compareAndSet(n, n + 1));
+
+        try {
+            return factory.get();
+        } catch (RuntimeException | Error ex) {
+            created.decrementAndGet();
+            throw ex;
+        }
+    }
+
+    public void release(E e) {
+        if (!open.get()) {
+            return;
+        }
+
+        synchronized (idle) {
+            if (!idle.add(e)) {
+                throw new IllegalStateException("element released twice");
+            }
+        }
+
+        if (!free.offer(e)) {
+            synchronized (idle) {
+                idle.remove(e);
+            }
+
+            if (free.isOpen()) {
+                throw new IllegalStateException("more elements released than the pool ever handed out");
+            }
+        }
+    }
+
+    public void put(E e) throws InterruptedException {
+        data.put(e);
+    }
+
+    public E take() throws InterruptedException {
+        return data.take();
+    }
+
+    public Received<E> receive() throws InterruptedException {
+        return data.receive();
+    }
+
+    public Channel<E> channel() {
+        return data;
+    }
+
+    public int available() {
+        return free.size() + poolSize - created.get();
+    }
+
+    private E reused(E e) {
+        synchronized (idle) {
+            idle.remove(e);
+        }
+
+        return e;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!open.compareAndSet(true, false)) {
+            throw new IOException(new ChannelIsClosed());
+        }
+
+        data.close();
+        free.close();
+    }
+}
@@ -0,0 +1,123 @@
+package com.github.adamluzsi.csp;
+
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.*;
+
+public class PooledChannelTest {
+    private ExecutorService e = Executors.newCachedThreadPool();
+
+    @Test
+    public void testAcquire_ConsumerReleasesEveryElement_InstancesRecycledAndNeverMoreThanPoolSizeCreated() throws Exception {
+        AtomicInteger created = new AtomicInteger();
+        PooledChannel<int[]> subject = new PooledChannel<>(4, () -> {
+            created.incrementAndGet();
+            return new int[1];
+        });
+
+        Set<int[]> instances = Collections.newSetFromMap(new IdentityHashMap<>());
+        Future<Integer> consuming = e.submit(() -> {
+            int sum = 0;
+            for (int i = 0; i < 1000; i++) {
+                int[] message = subject.take();
+                synchronized (instances) {
+                    instances.add(message);
+                }
+                sum += message[0];
+                subject.release(message);
+            }
+            return sum;
+        });
+
+        for (int i = 0; i < 1000; i++) {
+            int[] message = subject.acquire();
+            message[0] = 1;
+            subject.put(message);
+        }
+
+        assertEquals(consuming.get(1, TimeUnit.SECONDS), Integer.valueOf(1000));
+        assertTrue(created.get() <= 4);
+        assertEquals(instances.size(), created.get());
+    }
+
+    @Test
+    public void testAcquire_PoolExhausted_AcquireBlocksUntilRelease() throws Exception {
+        PooledChannel<StringBuilder> subject = new PooledChannel<>(2, StringBuilder::new);
+
+        subject.put(subject.acquire());
+        subject.put(subject.acquire());
+        assertEquals(subject.available(), 0);
+
+        Future<StringBuilder> blocked = e.submit(subject::acquire);
+        Thread.sleep(50);
+        assertFalse(blocked.isDone());
+
+        StringBuilder released = subject.take();
+        subject.release(released);
+
+        assertSame(blocked.get(1, TimeUnit.SECONDS), released);
+    }
+
+    @Test
+    public void testRelease_MoreThanThePoolHandedOut_ExceptionThrown() throws Exception {
+        PooledChannel<StringBuilder> subject = new PooledChannel<>(1, StringBuilder::new);
+
+        subject.release(subject.acquire());
+
+        assertThrows(IllegalStateException.class, () -> subject.release(new StringBuilder()));
+    }
+
+    @Test
+    public void testRelease_SameInstanceTwice_ExceptionThrownAndPoolNotDuplicated() throws Exception {
+        PooledChannel<StringBuilder> subject = new PooledChannel<>(2, StringBuilder::new);
+        StringBuilder element = subject.acquire();
+
+        subject.release(element);
+
+        assertThrows(IllegalStateException.class, () -> subject.release(element));
+        assertSame(subject.acquire(), element);
+        assertNotSame(subject.acquire(), element);
+    }
+
+    @Test
+    public void testAcquire_FactoryThrows_SlotGivenBack() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        PooledChannel<StringBuilder> subject = new PooledChannel<>(1, () -> {
+            if (calls.incrementAndGet() == 1) {
+                throw new IllegalStateException("expected factory failure");
+            }
+
+            return new StringBuilder();
+        });
+
+        assertThrows(IllegalStateException.class, subject::acquire);
+        assertEquals(subject.available(), 1);
+        assertNotNull(e.submit(subject::acquire).get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testClose_ProducerWaitsForAFreeElement_ChannelIsClosedThrown() throws Exception {
+        PooledChannel<StringBuilder> subject = new PooledChannel<>(1, StringBuilder::new);
+        subject.put(subject.acquire());
+
+        Future<StringBuilder> blocked = e.submit(subject::acquire);
+        Thread.sleep(50);
+        subject.close();
+
+        try {
+            blocked.get(1, TimeUnit.SECONDS);
+            fail("acquire should fail on a closed pool");
+        } catch (ExecutionException ex) {
+            assertEquals(ex.getCause().getClass(), ChannelIsClosed.class);
+        }
+
+        assertEquals(subject.receive().status(), Status.OK);
+        assertTrue(subject.receive().closed());
+        assertThrows(IOException.class, subject::close);
+    }
+}
@@ -0,0 +1,127 @@
+package com.github.adamluzsi.csp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+public class RateLimitedChannel<E> implements Closeable {
+    private final Channel<E> source;
+    private final double perNano;
+    private final int burst;
+
+    private double tokens;
+    private long refilled;
+
+    public RateLimitedChannel(Channel<E> source, double permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("rate limit requires a positive rate and burst");
+        }
+
+        this.source = source;
+        this.perNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = burst;
+        this.tokens = burst;
+        this.refilled = System.nanoTime();
+    }
+
+    public E take() throws InterruptedException {
+        acquire(1);
+
+        boolean taken = false;
+        try {
+            E e = source.take();
+            taken = true;
+            return e;
+        } finally {
+            if (!taken) {
+                refund(1);
+            }
+        }
+    }
+
+    public E poll() {
+        if (tryAcquire(1) == 0) {
+            return null;
+        }
+
+        E e = source.poll();
+        if (e == null) {
+            refund(1);
+        }
+
+        return e;
+    }
+
+    // blocks for the first element only, the rest of the batch is whatever is already buffered and paid for
+    public List<E> takeBatch(int max) throws InterruptedException {
+        if (max < 1) {
+            throw new IllegalArgumentException("batch size must be positive");
+        }
+
+        int granted = acquire(max);
+        List<E> batch = new ArrayList<>(granted);
+
+        try {
+            batch.add(source.take());
+
+            if (granted > 1) {
+                source.drainTo(batch, granted - 1);
+            }
+        } finally {
+            if (batch.size() < granted) {
+                refund(granted - batch.size());
+            }
+        }
+
+        return batch;
+    }
+
+    @Override
+    public void close() throws IOException {
+        source.close();
+    }
+
+    private int acquire(int max) throws InterruptedException {
+        while (true) {
+            long wait;
+
+            synchronized (this) {
+                int granted = grant(max);
+                if (granted > 0) {
+                    return granted;
+                }
+
+                wait = (long) Math.ceil((1 - tokens) / perNano);
+            }
+
+            LockSupport.parkNanos(this, wait);
+
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+
+    private synchronized int tryAcquire(int max) {
+        return grant(max);
+    }
+
+    private synchronized void refund(int n) {
+        tokens = Math.min(burst, tokens + n);
+    }
+
+    // tokens are topped up from the clock on demand, so an idle limiter costs nothing and needs no timer thread
+    private int grant(int max) {
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - refilled) * perNano);
+        refilled = now;
+
+        int granted = (int) Math.min(max, Math.floor(tokens));
+        tokens -= granted;
+
+        return granted;
+    }
+}
@@ -0,0 +1,99 @@
+package com.github.adamluzsi.csp;
+
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.testng.Assert.*;
+
+public class RateLimitedChannelTest {
+    private ExecutorService e = Executors.newCachedThreadPool();
+
+    private Channel<Integer> filled(int n) throws InterruptedException {
+        Channel<Integer> channel = new Channel<>(n);
+
+        for (int i = 0; i < n; i++) {
+            channel.put(i);
+        }
+
+        return channel;
+    }
+
+    @Test
+    public void testTake_BurstExhausted_FurtherTakesPacedByRate() throws Exception {
+        RateLimitedChannel<Integer> subject = new RateLimitedChannel<>(filled(15), 100, 5);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            assertEquals(subject.take(), Integer.valueOf(i));
+        }
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(50));
+
+        for (int i = 5; i < 15; i++) {
+            assertEquals(subject.take(), Integer.valueOf(i));
+        }
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(90));
+    }
+
+    @Test
+    public void testTakeBatch_MoreBufferedThanTokens_BatchLimitedByTokenCount() throws Exception {
+        RateLimitedChannel<Integer> subject = new RateLimitedChannel<>(filled(10), 10, 3);
+
+        List<Integer> first = subject.takeBatch(10);
+        assertEquals(first.size(), 3);
+
+        long start = System.nanoTime();
+        List<Integer> second = subject.takeBatch(10);
+        assertEquals(second.size(), 1);
+        assertEquals(second.get(0), Integer.valueOf(3));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(80));
+    }
+
+    @Test
+    public void testTakeBatch_FewerBufferedThanTokens_UnusedTokensKept() throws Exception {
+        Channel<Integer> source = new Channel<>(8);
+        RateLimitedChannel<Integer> subject = new RateLimitedChannel<>(source, 1, 5);
+
+        source.put(40);
+        source.put(41);
+
+        assertEquals(subject.takeBatch(5).size(), 2);
+
+        source.put(42);
+        source.put(43);
+        source.put(44);
+
+        assertEquals(subject.takeBatch(5).size(), 3);
+    }
+
+    @Test
+    public void testPoll_NoTokensLeft_NullEvenThoughElementsAreBuffered() throws Exception {
+        RateLimitedChannel<Integer> subject = new RateLimitedChannel<>(filled(3), 1, 1);
+
+        assertEquals(subject.poll(), Integer.valueOf(0));
+        assertNull(subject.poll());
+    }
+
+    @Test
+    public void testClose_TakerWaitingForElements_ChannelIsClosedThrown() throws Exception {
+        RateLimitedChannel<Integer> subject = new RateLimitedChannel<>(new Channel<>(), 100, 1);
+
+        Future<Integer> taking = e.submit(subject::take);
+        Thread.sleep(50);
+        subject.close();
+
+        try {
+            taking.get(1, TimeUnit.SECONDS);
+            fail("take should fail on a closed channel");
+        } catch (ExecutionException ex) {
+            assertEquals(ex.getCause().getClass(), ChannelIsClosed.class);
+        }
+    }
+
+    @Test
+    public void testConstructor_InvalidRate_ExceptionThrown() {
+        assertThrows(IllegalArgumentException.class, () -> new RateLimitedChannel<>(new Channel<Integer>(), 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new RateLimitedChannel<>(new Channel<Integer>(), 1, 0));
+    }
+}
@@ -0,0 +1,50 @@
+package com.github.adamluzsi.csp;
+
+import java.util.NoSuchElementException;
+
+public final class Received<E> {
+    private static final Received<?> CLOSED = new Received<>(Status.CLOSED, null);
+    private static final Received<?> EMPTY = new Received<>(Status.WOULD_BLOCK, null);
+
+    private final Status status;
+    private final E value;
+
+    private Received(Status status, E value) {
+        this.status = status;
+        this.value = value;
+    }
+
+    static <E> Received<E> of(E value) {
+        return new Received<>(Status.OK, value);
+    }
+
+    @SuppressWarnings("unchecked")
+    static <E> Received<E> end() {
+        return (Received<E>) CLOSED;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <E> Received<E> empty() {
+        return (Received<E>) EMPTY;
+    }
+
+    public Status status() {
+        return status;
+    }
+
+    public boolean ok() {
+        return status == Status.OK;
+    }
+
+    public boolean closed() {
+        return status == Status.CLOSED;
+    }
+
+    public E value() {
+        if (status != Status.OK) {
+            throw new NoSuchElementException(status.name());
+        }
+
+        return value;
+    }
+}
@@ -0,0 +1,299 @@
+package com.github.adamluzsi.csp;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RemoteChannel<E> implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int HEADER = Integer.BYTES + 1;
+    private static final int MAX_FRAME = 16 * 1024 * 1024;
+
+    private static final byte DATA = 1;
+    private static final byte CREDIT = 2;
+    private static final byte CLOSE = 3;
+
+    private static final Object END = new Object();
+    private static final byte[] STOP = new byte[0];
+
+    private final SocketChannel socket;
+    private final Codec<E> codec;
+    private final int threshold;
+
+    // frames carry at most as many elements as the peer granted credits for, so the inbox never overflows
+    private final BlockingQueue<Object> inbox;
+    private final BlockingQueue<byte[]> outbox = new LinkedBlockingQueue<>();
+    private final Semaphore credits = new Semaphore(0);
+    private final AtomicInteger consumed = new AtomicInteger();
+    private final AtomicBoolean open = new AtomicBoolean(true);
+
+    public RemoteChannel(SocketChannel socket, Codec<E> codec, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("remote channel capacity must be positive");
+        }
+
+        this.socket = socket;
+        this.codec = codec;
+        this.threshold = Math.max(1, capacity / 4);
+        this.inbox = new ArrayBlockingQueue<>(capacity + 1);
+
+        outbox.add(credit(capacity));
+
+        Channel.go(this::write);
+        Channel.go(this::read);
+    }
+
+    public static ServerSocketChannel listen(Path path) throws IOException {
+        ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(path));
+
+        return server;
+    }
+
+    public static <E> RemoteChannel<E> accept(ServerSocketChannel server, Codec<E> codec, int capacity) throws IOException {
+        return new RemoteChannel<>(server.accept(), codec, capacity);
+    }
+
+    public static <E> RemoteChannel<E> connect(Path path, Codec<E> codec, int capacity) throws IOException {
+        SocketChannel socket = SocketChannel.open(StandardProtocolFamily.UNIX);
+        socket.connect(UnixDomainSocketAddress.of(path));
+
+        return new RemoteChannel<>(socket, codec, capacity);
+    }
+
+    public void put(E e) throws InterruptedException {
+        if (!open.get()) {
+            throw new ChannelIsClosed();
+        }
+
+        byte[] payload;
+        try {
+            payload = codec.encode(e);
+        } catch (IOException ex) {
+            throw new IllegalArgumentException(ex);
+        }
+
+        if (payload.length >= MAX_FRAME) {
+            throw new IllegalArgumentException("encoded element exceeds the maximum frame size of " + MAX_FRAME + " bytes");
+        }
+
+        // a credit is one free slot in the peer's inbox, waiting for it is the remote form of put blocking on a full buffer
+        credits.acquire();
+
+        if (!open.get()) {
+            credits.release();
+            throw new ChannelIsClosed();
+        }
+
+        outbox.add(frame(DATA, payload));
+    }
+
+    @SuppressWarnings("unchecked")
+    public E take() throws InterruptedException {
+        Object o = inbox.take();
+
+        if (o == END) {
+            inbox.offer(END);
+            throw new ChannelIsClosed();
+        }
+
+        consumed();
+        return (E) o;
+    }
+
+    public Received<E> receive() throws InterruptedException {
+        try {
+            return Received.of(take());
+        } catch (ChannelIsClosed ex) {
+            return Received.end();
+        }
+    }
+
+    public boolean isOpen() {
+        return open.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!open.compareAndSet(true, false)) {
+            throw new IOException(new ChannelIsClosed());
+        }
+
+        inbox.clear();
+        shutdown(frame(CLOSE, new byte[0]));
+    }
+
+    private void shutdown(byte[] last) {
+        inbox.offer(END);
+        credits.release(Integer.MAX_VALUE / 2);
+
+        if (last != STOP) {
+            outbox.add(last);
+        }
+
+        outbox.add(STOP);
+    }
+
+    private void consumed() {
+        int n = consumed.incrementAndGet();
+
+        if (n < threshold && !inbox.isEmpty()) {
+            return;
+        }
+
+        n = consumed.getAndSet(0);
+        if (n > 0 && open.get()) {
+            outbox.add(credit(n));
+        }
+    }
+
+    private void write() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        List<byte[]> batch = new ArrayList<>();
+
+        try {
+            while (true) {
+                batch.add(outbox.take());
+                outbox.drainTo(batch);
+
+                // everything queued since the last write goes out together, so a burst of puts costs one syscall
+                for (byte[] frame : batch) {
+                    if (frame == STOP) {
+                        flush(buffer);
+                        return;
+                    }
+
+                    if (buffer.remaining() < frame.length) {
+                        flush(buffer);
+                    }
+
+                    if (frame.length > buffer.capacity()) {
+                        send(ByteBuffer.wrap(frame));
+                        continue;
+                    }
+
+                    buffer.put(frame);
+                }
+
+                flush(buffer);
+                batch.clear();
+            }
+        } catch (IOException | InterruptedException ex) {
+            remoteClosed();
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException ex) {
+                // nothing left to release
+            }
+        }
+    }
+
+    private void flush(ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        send(buffer);
+        buffer.clear();
+    }
+
+    private void send(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            socket.write(buffer);
+        }
+    }
+
+    private void read() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).flip();
+
+        try {
+            while (true) {
+                buffer = ensure(buffer, HEADER);
+                int length = buffer.getInt();
+                byte type = buffer.get();
+
+                // the length comes from the peer, so it is checked before it can size an allocation
+                if (length < 1 || length > MAX_FRAME) {
+                    throw new IOException("invalid frame length " + length);
+                }
+
+                buffer = ensure(buffer, length - 1);
+                byte[] payload = new byte[length - 1];
+                buffer.get(payload);
+
+                switch (type) {
+                    case DATA:
+                        if (open.get()) {
+                            inbox.add(codec.decode(payload));
+                        }
+                        break;
+
+                    case CREDIT:
+                        credits.release(ByteBuffer.wrap(payload).getInt());
+                        break;
+
+                    case CLOSE:
+                        remoteClosed();
+                        return;
+
+                    default:
+                        throw new IOException("unknown frame type " + type);
+                }
+            }
+        } catch (IOException | RuntimeException ex) {
+            // a frame that cannot be decoded ends the channel like a broken connection would
+            remoteClosed();
+        }
+    }
+
+    private ByteBuffer ensure(ByteBuffer buffer, int n) throws IOException {
+        if (buffer.capacity() < n) {
+            ByteBuffer grown = ByteBuffer.allocateDirect(n);
+            grown.put(buffer).flip();
+            buffer = grown;
+        }
+
+        while (buffer.remaining() < n) {
+            buffer.compact();
+            int read = socket.read(buffer);
+            buffer.flip();
+
+            if (read < 0) {
+                throw new EOFException();
+            }
+        }
+
+        return buffer;
+    }
+
+    // elements that already arrived stay takeable, the end marker queues up behind them
+    private void remoteClosed() {
+        if (open.compareAndSet(true, false)) {
+            shutdown(STOP);
+        }
+    }
+
+    private static byte[] credit(int n) {
+        return frame(CREDIT, ByteBuffer.allocate(Integer.BYTES).putInt(n).array());
+    }
+
+    private static byte[] frame(byte type, byte[] payload) {
+        return ByteBuffer.allocate(HEADER + payload.length)
+                .putInt(1 + payload.length)
+                .put(type)
+                .put(payload)
+                .array();
+    }
+}
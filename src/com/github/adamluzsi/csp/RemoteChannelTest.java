@@ -0,0 +1,151 @@
+package com.github.adamluzsi.csp;
+
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.testng.Assert.*;
+
+public class RemoteChannelTest {
+    private ExecutorService e = Executors.newCachedThreadPool();
+
+    private static class IntCodec implements Codec<Integer> {
+        @Override
+        public byte[] encode(Integer i) {
+            return ByteBuffer.allocate(Integer.BYTES).putInt(i).array();
+        }
+
+        @Override
+        public Integer decode(byte[] bytes) {
+            return ByteBuffer.wrap(bytes).getInt();
+        }
+    }
+
+    private List<RemoteChannel<Integer>> pair(int capacity) throws Exception {
+        Path path = Files.createTempDirectory("remote-channel").resolve("socket");
+        ServerSocketChannel server = RemoteChannel.listen(path);
+
+        Future<RemoteChannel<Integer>> accepted = e.submit(() -> RemoteChannel.accept(server, new IntCodec(), capacity));
+        RemoteChannel<Integer> client = RemoteChannel.connect(path, new IntCodec(), capacity);
+        RemoteChannel<Integer> host = accepted.get(1, TimeUnit.SECONDS);
+
+        server.close();
+        Files.deleteIfExists(path);
+
+        return Arrays.asList(client, host);
+    }
+
+    @Test
+    public void testPutAndTake_ManyValuesBothDirections_ReceivedInOrder() throws Exception {
+        List<RemoteChannel<Integer>> pair = pair(16);
+
+        Future<?> sending = e.submit(() -> {
+            for (int i = 0; i < 10_000; i++) {
+                pair.get(0).put(i);
+            }
+            return null;
+        });
+
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(pair.get(1).take(), Integer.valueOf(i));
+        }
+        sending.get(1, TimeUnit.SECONDS);
+
+        pair.get(1).put(42);
+        assertEquals(pair.get(0).take(), Integer.valueOf(42));
+
+        pair.get(0).close();
+    }
+
+    @Test
+    public void testPut_ReceiverInboxIsFull_PutBlocksUntilReceiverTakes() throws Exception {
+        List<RemoteChannel<Integer>> pair = pair(2);
+
+        pair.get(0).put(1);
+        pair.get(0).put(2);
+
+        Future<?> blocked = e.submit(() -> {
+            pair.get(0).put(3);
+            return null;
+        });
+
+        Thread.sleep(100);
+        assertFalse(blocked.isDone());
+
+        assertEquals(pair.get(1).take(), Integer.valueOf(1));
+        blocked.get(1, TimeUnit.SECONDS);
+
+        pair.get(0).close();
+    }
+
+    @Test
+    public void testClose_SenderClosesAfterPuts_ReceiverGetsValuesThenClosed() throws Exception {
+        List<RemoteChannel<Integer>> pair = pair(8);
+
+        pair.get(0).put(1);
+        pair.get(0).put(2);
+        pair.get(0).close();
+
+        assertEquals(pair.get(1).take(), Integer.valueOf(1));
+        assertEquals(pair.get(1).take(), Integer.valueOf(2));
+        assertTrue(pair.get(1).receive().closed());
+        assertThrows(ChannelIsClosed.class, pair.get(1)::take);
+        assertFalse(pair.get(1).isOpen());
+        assertThrows(ChannelIsClosed.class, () -> pair.get(1).put(3));
+        assertThrows(IOException.class, pair.get(0)::close);
+    }
+
+    @Test
+    public void testClose_ReceiverClosesWhileSenderWaitsForCredit_SenderFails() throws Exception {
+        List<RemoteChannel<Integer>> pair = pair(1);
+
+        pair.get(0).put(1);
+
+        Future<?> blocked = e.submit(() -> {
+            pair.get(0).put(2);
+            return null;
+        });
+
+        Thread.sleep(50);
+        pair.get(1).close();
+
+        try {
+            blocked.get(1, TimeUnit.SECONDS);
+            fail("put should fail once the receiver is gone");
+        } catch (ExecutionException ex) {
+            assertEquals(ex.getCause().getClass(), ChannelIsClosed.class);
+        }
+    }
+
+    @Test
+    public void testRead_PeerSendsInvalidFrameLengths_ChannelEndsInsteadOfReaderDying() throws Exception {
+        for (int length : new int[]{0, -5, Integer.MAX_VALUE}) {
+            Path path = Files.createTempDirectory("remote-channel").resolve("socket");
+            ServerSocketChannel server = RemoteChannel.listen(path);
+
+            Future<RemoteChannel<Integer>> accepted = e.submit(() -> RemoteChannel.accept(server, new IntCodec(), 4));
+            try (SocketChannel peer = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+                peer.connect(UnixDomainSocketAddress.of(path));
+                RemoteChannel<Integer> subject = accepted.get(1, TimeUnit.SECONDS);
+
+                peer.write(ByteBuffer.allocate(Integer.BYTES + 1).putInt(length).put((byte) 1).flip());
+
+                assertTrue(e.submit(subject::receive).get(1, TimeUnit.SECONDS).closed(), "length " + length);
+                assertFalse(subject.isOpen());
+            } finally {
+                server.close();
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.github.adamluzsi.csp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+public class RequestChannel<Req, Resp> implements Closeable {
+    private static final int POOL_SIZE = 1024;
+
+    private static final int PENDING = 0;
+    private static final int DONE = 1;
+    private static final int CANCELLED = 2;
+
+    private final BlockingQueue<Slot<Req, Resp>> queue;
+    private final Channel<Slot<Req, Resp>> requests;
+    private final BlockingQueue<Slot<Req, Resp>> pool = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    public RequestChannel() {
+        this(0);
+    }
+
+    public RequestChannel(int capacity) {
+        this.queue = capacity == 0 ? new SynchronousQueue<>() : new ArrayBlockingQueue<>(capacity);
+        this.requests = new Channel<>(queue, OverflowPolicy.block());
+    }
+
+    public Resp ask(Req request, long timeout, TimeUnit unit)
+            throws InterruptedException, TimeoutException, ExecutionException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        Slot<Req, Resp> slot = pool.poll();
+
+        if (slot == null) {
+            slot = new Slot<>();
+        }
+
+        slot.reset(request, Thread.currentThread());
+
+        boolean sent = false;
+        try {
+            sent = requests.offer(slot, timeout, unit);
+        } finally {
+            if (!sent) {
+                recycle(slot);
+            }
+        }
+
+        if (!sent) {
+            throw new TimeoutException();
+        }
+
+        while (slot.state.get() == PENDING) {
+            long remaining = deadline - System.nanoTime();
+            boolean interrupted = Thread.interrupted();
+
+            if (remaining <= 0 || interrupted) {
+                // once cancelled, the slot goes back to the pool from whichever server still holds it
+                if (slot.state.compareAndSet(PENDING, CANCELLED)) {
+                    if (interrupted) {
+                        throw new InterruptedException();
+                    }
+
+                    throw new TimeoutException();
+                }
+
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+
+                break;
+            }
+
+            LockSupport.parkNanos(this, remaining);
+        }
+
+        Resp response = slot.response;
+        Throwable failure = slot.failure;
+        recycle(slot);
+
+        if (failure instanceof ChannelIsClosed) {
+            throw (ChannelIsClosed) failure;
+        }
+
+        if (failure != null) {
+            throw new ExecutionException(failure);
+        }
+
+        return response;
+    }
+
+    public WaitGroup serve(Function<? super Req, ? extends Resp> handler, int parallelism) {
+        return requests.workers(parallelism, parallelism, (slot) -> {
+            if (slot.state.get() != PENDING) {
+                recycle(slot);
+                return;
+            }
+
+            try {
+                complete(slot, handler.apply(slot.request), null);
+            } catch (Throwable t) {
+                complete(slot, null, t);
+            }
+        });
+    }
+
+    @Override
+    public void close() throws IOException {
+        requests.close();
+
+        // requests nobody picked up yet would otherwise leave their askers waiting for the timeout
+        List<Slot<Req, Resp>> abandoned = new ArrayList<>();
+        queue.drainTo(abandoned);
+
+        for (Slot<Req, Resp> slot : abandoned) {
+            complete(slot, null, new ChannelIsClosed());
+        }
+    }
+
+    private void complete(Slot<Req, Resp> slot, Resp response, Throwable failure) {
+        slot.response = response;
+        slot.failure = failure;
+        Thread waiter = slot.waiter;
+
+        if (slot.state.compareAndSet(PENDING, DONE)) {
+            LockSupport.unpark(waiter);
+        } else {
+            recycle(slot);
+        }
+    }
+
+    private void recycle(Slot<Req, Resp> slot) {
+        slot.reset(null, null);
+        pool.offer(slot);
+    }
+
+    private static class Slot<Req, Resp> {
+        private final AtomicInteger state = new AtomicInteger();
+        private Req request;
+        private Resp response;
+        private Throwable failure;
+        private Thread waiter;
+
+        private void reset(Req request, Thread waiter) {
+            this.request = request;
+            this.response = null;
+            this.failure = null;
+            this.waiter = waiter;
+            this.state.set(PENDING);
+        }
+    }
+}
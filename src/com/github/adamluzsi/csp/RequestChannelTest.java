@@ -0,0 +1,104 @@
+package com.github.adamluzsi.csp;
+
+import org.testng.annotations.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.testng.Assert.*;
+
+public class RequestChannelTest {
+    private ExecutorService e = Executors.newCachedThreadPool();
+
+    @Test
+    public void testAsk_ManyConcurrentAskers_EachGetsTheReplyToItsOwnRequest() throws Exception {
+        RequestChannel<Integer, Integer> subject = new RequestChannel<>();
+        subject.serve((i) -> i * 2, 4);
+
+        List<Future<?>> askers = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int offset = t * 1000;
+
+            askers.add(e.submit(() -> {
+                for (int i = offset; i < offset + 1000; i++) {
+                    assertEquals(subject.ask(i, 1, TimeUnit.SECONDS), Integer.valueOf(i * 2));
+                }
+                return null;
+            }));
+        }
+
+        for (Future<?> asker : askers) {
+            asker.get(5, TimeUnit.SECONDS);
+        }
+
+        subject.close();
+    }
+
+    @Test
+    public void testAsk_HandlerSlowerThanTimeout_TimeoutThrownAndLateReplyDoesNotLeakIntoNextAsk() throws Exception {
+        RequestChannel<String, String> subject = new RequestChannel<>();
+        subject.serve((s) -> {
+            if (s.equals("slow")) {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return s.toUpperCase();
+        }, 2);
+
+        assertThrows(TimeoutException.class, () -> subject.ask("slow", 50, TimeUnit.MILLISECONDS));
+
+        Thread.sleep(250);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(subject.ask("fast" + i, 1, TimeUnit.SECONDS), "FAST" + i);
+        }
+
+        subject.close();
+    }
+
+    @Test
+    public void testAsk_HandlerThrows_ExecutionExceptionWithTheCause() throws Exception {
+        RequestChannel<String, String> subject = new RequestChannel<>();
+        subject.serve((s) -> {
+            throw new IllegalArgumentException(s);
+        }, 1);
+
+        try {
+            subject.ask("boom", 1, TimeUnit.SECONDS);
+            fail("ask should fail");
+        } catch (ExecutionException ex) {
+            assertEquals(ex.getCause().getClass(), IllegalArgumentException.class);
+            assertEquals(ex.getCause().getMessage(), "boom");
+        }
+
+        subject.close();
+    }
+
+    @Test
+    public void testAsk_NobodyServes_TimeoutThrown() {
+        RequestChannel<String, String> subject = new RequestChannel<>();
+
+        assertThrows(TimeoutException.class, () -> subject.ask("hello", 20, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testClose_RequestQueuedButNotServed_AskerGetsChannelIsClosed() throws Exception {
+        RequestChannel<String, String> subject = new RequestChannel<>(4);
+
+        Future<String> asking = e.submit(() -> subject.ask("hello", 5, TimeUnit.SECONDS));
+
+        Thread.sleep(50);
+        subject.close();
+
+        try {
+            asking.get(1, TimeUnit.SECONDS);
+            fail("ask should fail");
+        } catch (ExecutionException ex) {
+            assertEquals(ex.getCause().getClass(), ChannelIsClosed.class);
+        }
+
+        assertThrows(ChannelIsClosed.class, () -> subject.ask("again", 1, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,73 @@
+package com.github.adamluzsi.csp;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+class SojournClock {
+    private final ConcurrentLinkedQueue<Stamp> stamps = new ConcurrentLinkedQueue<>();
+    private final LatencyHistogram histogram;
+
+    SojournClock(LatencyHistogram histogram) {
+        this.histogram = histogram;
+    }
+
+    LatencyHistogram histogram() {
+        return histogram;
+    }
+
+    // stamped before the element enters the queue, so a consumer always finds a stamp for what it took
+    Stamp stamp() {
+        Stamp stamp = new Stamp(System.nanoTime());
+        stamps.add(stamp);
+
+        return stamp;
+    }
+
+    // a consumer may already have claimed the rejected element's stamp for an element admitted after it,
+    // then one other stamp has to go instead, otherwise every later sojourn is measured against an older put
+    void cancel(Stamp stamp) {
+        if (!stamp.settled.compareAndSet(false, true)) {
+            next();
+        }
+    }
+
+    void dequeued(int n) {
+        long now = System.nanoTime();
+
+        for (int i = 0; i < n; i++) {
+            Stamp stamp = next();
+
+            if (stamp != null) {
+                histogram.record(now - stamp.nanos);
+            }
+        }
+    }
+
+    void evicted(int n) {
+        for (int i = 0; i < n; i++) {
+            next();
+        }
+    }
+
+    void clear() {
+        stamps.clear();
+    }
+
+    private Stamp next() {
+        Stamp stamp;
+        do {
+            stamp = stamps.poll();
+        } while (stamp != null && !stamp.settled.compareAndSet(false, true));
+
+        return stamp;
+    }
+
+    static final class Stamp {
+        private final long nanos;
+        private final AtomicBoolean settled = new AtomicBoolean();
+
+        private Stamp(long nanos) {
+            this.nanos = nanos;
+        }
+    }
+}
@@ -0,0 +1,413 @@
+package com.github.adamluzsi.csp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+class SpillingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E>, Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long SEGMENT_SIZE = 64L * 1024 * 1024;
+
+    private final ArrayDeque<E> memory;
+    private final int capacity;
+    private final Path parent;
+    private final Codec<E> codec;
+    private final long segmentSize;
+
+    private final ReentrantLock mutex = new ReentrantLock();
+    private final Condition notEmpty = mutex.newCondition();
+
+    private Path directory;
+    private long spilled;
+    private long writeSegment;
+    private long writeSegmentBytes;
+    private FileChannel writeChannel;
+    private ByteBuffer writeBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private long readSegment;
+    private FileChannel readChannel;
+    private ByteBuffer readBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE).flip();
+
+    SpillingQueue(int capacity, Path directory, Codec<E> codec) {
+        this(capacity, directory, codec, SEGMENT_SIZE);
+    }
+
+    SpillingQueue(int capacity, Path directory, Codec<E> codec, long segmentSize) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("in-memory capacity must be positive");
+        }
+
+        this.memory = new ArrayDeque<>(capacity);
+        this.capacity = capacity;
+        this.parent = directory;
+        this.codec = codec;
+        this.segmentSize = segmentSize;
+    }
+
+    long spilled() {
+        mutex.lock();
+        try {
+            return spilled;
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(E e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+
+        mutex.lock();
+        try {
+            enqueue(e);
+            notEmpty.signal();
+            return true;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    @Override
+    public void put(E e) {
+        offer(e);
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) {
+        return offer(e);
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        mutex.lockInterruptibly();
+        try {
+            while (memory.isEmpty() && spilled == 0) {
+                notEmpty.await();
+            }
+
+            return next();
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+
+        mutex.lockInterruptibly();
+        try {
+            while (memory.isEmpty() && spilled == 0) {
+                if (nanos <= 0) {
+                    return null;
+                }
+
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+
+            return next();
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    @Override
+    public E poll() {
+        mutex.lock();
+        try {
+            return memory.isEmpty() && spilled == 0 ? null : next();
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    @Override
+    public E peek() {
+        mutex.lock();
+        try {
+            if (memory.isEmpty() && spilled > 0) {
+                refill();
+            }
+
+            return memory.peekFirst();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        mutex.lock();
+        try {
+            return (int) Math.min(Integer.MAX_VALUE, memory.size() + spilled);
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return Integer.MAX_VALUE;
+    }
+
+    // only the in-memory part is visible, spilled elements are not read back for iteration
+    @Override
+    public Iterator<E> iterator() {
+        mutex.lock();
+        try {
+            return Collections.unmodifiableList(new ArrayList<>(memory)).iterator();
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        mutex.lock();
+        try {
+            int n = 0;
+
+            while (n < maxElements && (!memory.isEmpty() || spilled > 0)) {
+                c.add(next());
+                n++;
+            }
+
+            return n;
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return rotate(o::equals, true);
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super E> filter) {
+        return rotate(filter, false);
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        return rotate(c::contains, false);
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        return rotate((e) -> !c.contains(e), false);
+    }
+
+    // the channel calls this once its receivers drained it after close, so the spilled segments are no longer needed
+    @Override
+    public void close() throws IOException {
+        mutex.lock();
+        try {
+            memory.clear();
+            spilled = 0;
+            reset();
+
+            if (directory != null) {
+                Files.deleteIfExists(directory);
+                directory = null;
+            }
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    // every element is taken from the head and the survivors appended again, so only the
+    // in-memory capacity is ever held on the heap no matter how much is spilled
+    private boolean rotate(Predicate<? super E> filter, boolean once) {
+        mutex.lock();
+        try {
+            boolean removed = false;
+
+            for (long n = memory.size() + spilled; n > 0; n--) {
+                E e = next();
+
+                if ((once && removed) || !filter.test(e)) {
+                    enqueue(e);
+                } else {
+                    removed = true;
+                }
+            }
+
+            return removed;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    // once anything is on disk, newer elements must queue up behind it to keep FIFO order
+    private void enqueue(E e) throws IOException {
+        if (spilled == 0 && memory.size() < capacity) {
+            memory.addLast(e);
+        } else {
+            spill(e);
+        }
+    }
+
+    private E next() {
+        try {
+            if (memory.isEmpty()) {
+                refill();
+            }
+
+            return memory.pollFirst();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private void spill(E e) throws IOException {
+        byte[] bytes = codec.encode(e);
+        int length = Integer.BYTES + bytes.length;
+
+        if (writeChannel == null) {
+            if (directory == null) {
+                Files.createDirectories(parent);
+                directory = Files.createTempDirectory(parent, "channel-");
+            }
+
+            writeChannel = FileChannel.open(segment(writeSegment),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+
+        if (writeBuffer.remaining() < length) {
+            flush();
+
+            if (writeBuffer.capacity() < length) {
+                writeBuffer = ByteBuffer.allocateDirect(length);
+            }
+        }
+
+        writeBuffer.putInt(bytes.length).put(bytes);
+        writeSegmentBytes += length;
+        spilled++;
+
+        if (writeSegmentBytes >= segmentSize) {
+            flush();
+            writeChannel.close();
+            writeChannel = null;
+            writeSegment++;
+            writeSegmentBytes = 0;
+        }
+    }
+
+    private void refill() throws IOException {
+        flush();
+
+        while (memory.size() < capacity && spilled > 0) {
+            ensure(Integer.BYTES);
+            int length = readBuffer.getInt();
+
+            ensure(length);
+            byte[] bytes = new byte[length];
+            readBuffer.get(bytes);
+
+            memory.addLast(codec.decode(bytes));
+            spilled--;
+        }
+
+        if (spilled == 0) {
+            reset();
+        }
+    }
+
+    private void ensure(int n) throws IOException {
+        if (readBuffer.capacity() < n) {
+            ByteBuffer grown = ByteBuffer.allocateDirect(n);
+            grown.put(readBuffer).flip();
+            readBuffer = grown;
+        }
+
+        while (readBuffer.remaining() < n) {
+            if (readChannel == null) {
+                readChannel = FileChannel.open(segment(readSegment), StandardOpenOption.READ);
+            }
+
+            readBuffer.compact();
+            int read = readChannel.read(readBuffer);
+            readBuffer.flip();
+
+            if (read < 0) {
+                // records never span segments, so a finished segment can be dropped as soon as it is read
+                if (readBuffer.hasRemaining() || readSegment >= writeSegment) {
+                    throw new IOException("spill segment " + segment(readSegment) + " is truncated");
+                }
+
+                readChannel.close();
+                readChannel = null;
+                Files.delete(segment(readSegment));
+                readSegment++;
+            }
+        }
+    }
+
+    private void flush() throws IOException {
+        writeBuffer.flip();
+
+        while (writeBuffer.hasRemaining()) {
+            writeChannel.write(writeBuffer);
+        }
+
+        writeBuffer.clear();
+    }
+
+    // nothing is left on disk, so every segment file can go and the next spill starts a fresh one
+    private void reset() throws IOException {
+        writeBuffer.clear();
+        readBuffer.clear().flip();
+
+        if (writeChannel != null) {
+            writeChannel.close();
+            writeChannel = null;
+        }
+
+        if (readChannel != null) {
+            readChannel.close();
+            readChannel = null;
+        }
+
+        for (long i = readSegment; i <= writeSegment && directory != null; i++) {
+            Files.deleteIfExists(segment(i));
+        }
+
+        writeSegment++;
+        writeSegmentBytes = 0;
+        readSegment = writeSegment;
+    }
+
+    private Path segment(long index) {
+        return directory.resolve(String.format("%020d.segment", index));
+    }
+}
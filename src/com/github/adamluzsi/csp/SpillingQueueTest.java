@@ -0,0 +1,175 @@
+package com.github.adamluzsi.csp;
+
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.testng.Assert.*;
+
+public class SpillingQueueTest {
+    private final Codec<Integer> codec = new Codec<Integer>() {
+        @Override
+        public byte[] encode(Integer e) {
+            return ByteBuffer.allocate(Integer.BYTES).putInt(e).array();
+        }
+
+        @Override
+        public Integer decode(byte[] bytes) {
+            return ByteBuffer.wrap(bytes).getInt();
+        }
+    };
+
+    @Test
+    public void testPut_MoreElementsThanMemoryCapacity_ProducerNeverBlocksAndOrderPreserved() throws Exception {
+        Path directory = Files.createTempDirectory("csp-spill");
+        Channel<Integer> subject = new Channel<>(4, directory, codec);
+
+        for (int i = 0; i < 1000; i++) {
+            subject.put(i);
+        }
+
+        assertEquals(subject.size(), 1000);
+
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(subject.take(), Integer.valueOf(i));
+        }
+
+        subject.close();
+        assertEquals(files(directory), 0);
+    }
+
+    @Test
+    public void testOffer_SegmentSizeExceeded_SegmentsRolledAndDeletedOnceRead() throws Exception {
+        Path directory = Files.createTempDirectory("csp-spill");
+        SpillingQueue<Integer> subject = new SpillingQueue<>(2, directory, codec, 64);
+
+        for (int i = 0; i < 100; i++) {
+            subject.offer(i);
+        }
+
+        assertEquals(subject.spilled(), 98);
+        assertTrue(files(directory) > 5);
+
+        List<Integer> drained = new ArrayList<>();
+        subject.drainTo(drained);
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(drained.get(i), Integer.valueOf(i));
+        }
+        assertEquals(subject.spilled(), 0);
+        assertEquals(files(directory), 0);
+
+        subject.close();
+    }
+
+    @Test
+    public void testPoll_PutsInterleavedWithTakes_FifoOrderKeptAcrossMemoryAndDisk() throws Exception {
+        Path directory = Files.createTempDirectory("csp-spill");
+        SpillingQueue<Integer> subject = new SpillingQueue<>(3, directory, codec, 32);
+        List<Integer> taken = new ArrayList<>();
+        int next = 0;
+
+        for (int round = 0; round < 50; round++) {
+            for (int i = 0; i < 5; i++) {
+                subject.put(next++);
+            }
+
+            for (int i = 0; i < 3; i++) {
+                taken.add(subject.poll());
+            }
+        }
+
+        while (subject.peek() != null) {
+            taken.add(subject.poll());
+        }
+
+        for (int i = 0; i < next; i++) {
+            assertEquals(taken.get(i), Integer.valueOf(i));
+        }
+
+        subject.close();
+    }
+
+    @Test
+    public void testRemove_ElementsSpilledToDisk_MatchesRemovedAndOrderKept() throws Exception {
+        Path directory = Files.createTempDirectory("csp-spill");
+        Channel<Integer> subject = new Channel<>(3, directory, codec);
+
+        for (int i = 0; i < 50; i++) {
+            subject.put(i);
+        }
+
+        assertTrue(subject.remove(Integer.valueOf(40)));
+        assertFalse(subject.remove(Integer.valueOf(40)));
+        assertTrue(subject.removeIf((i) -> i % 10 == 0));
+        assertTrue(subject.removeAll(List.of(1, 41)));
+        assertTrue(subject.retainAll(List.of(2, 3, 25, 49)));
+        assertEquals(subject.size(), 4);
+
+        List<Integer> drained = new ArrayList<>();
+        subject.drainTo(drained);
+        assertEquals(drained, List.of(2, 3, 25, 49));
+
+        subject.close();
+    }
+
+    @Test
+    public void testClose_ElementsStillSpilled_ReceiversDrainThemAndSegmentsDeletedAfterwards() throws Exception {
+        Path directory = Files.createTempDirectory("csp-spill");
+        Channel<Integer> subject = new Channel<>(2, directory, codec);
+
+        for (int i = 0; i < 100; i++) {
+            subject.put(i);
+        }
+
+        subject.close();
+        assertTrue(files(directory) > 0);
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(subject.take(), Integer.valueOf(i));
+        }
+
+        assertTrue(subject.receive().closed());
+        assertEquals(files(directory), 0);
+    }
+
+    @Test
+    public void testClose_NothingSpilled_DirectoryReleasedRightAway() throws Exception {
+        Path directory = Files.createTempDirectory("csp-spill");
+        Channel<Integer> subject = new Channel<>(2, directory, codec);
+
+        subject.put(1);
+        subject.put(2);
+        subject.put(3);
+        assertEquals(subject.take(), Integer.valueOf(1));
+        assertEquals(subject.take(), Integer.valueOf(2));
+        assertEquals(subject.take(), Integer.valueOf(3));
+
+        subject.close();
+
+        assertEquals(files(directory), 0);
+        try (Stream<Path> paths = Files.list(directory)) {
+            assertEquals(paths.count(), 0L);
+        }
+    }
+
+    @Test
+    public void testConstructor_NonPositiveCapacity_ExceptionThrown() throws IOException {
+        Path directory = Files.createTempDirectory("csp-spill");
+
+        assertThrows(IllegalArgumentException.class, () -> new Channel<>(0, directory, codec));
+    }
+
+    private long files(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            return paths.filter(Files::isRegularFile).count();
+        }
+    }
+
+}
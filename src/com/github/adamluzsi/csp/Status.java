@@ -0,0 +1,7 @@
+package com.github.adamluzsi.csp;
+
+public enum Status {
+    OK,
+    WOULD_BLOCK,
+    CLOSED
+}
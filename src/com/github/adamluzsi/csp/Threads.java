@@ -0,0 +1,46 @@
+package com.github.adamluzsi.csp;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.util.concurrent.ThreadFactory;
+
+final class Threads {
+    private static final MethodHandle VIRTUAL = virtualBuilder();
+
+    private Threads() {
+    }
+
+    static boolean virtualAvailable() {
+        return VIRTUAL != null;
+    }
+
+    static ThreadFactory preferVirtual() {
+        return (runnable) -> {
+            if (VIRTUAL != null) {
+                try {
+                    return (Thread) VIRTUAL.invoke(runnable);
+                } catch (Throwable ex) {
+                    // fall back to a platform thread
+                }
+            }
+
+            Thread thread = new Thread(runnable);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    // Thread.ofVirtual() only exists from Java 21, so it is looked up reflectively to keep older runtimes working
+    private static MethodHandle virtualBuilder() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+
+            return MethodHandles.publicLookup()
+                    .unreflect(builderType.getMethod("unstarted", Runnable.class))
+                    .bindTo(builder);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            return null;
+        }
+    }
+}
@@ -9,11 +9,16 @@ public class WaitGroup {
             "This could happen if the program code have race condition";
 
     public void add(int n) {
-        if ( size() + n < 0 ) {
-            throw new IllegalArgumentException(NEGATIVE_WAITER_COUNTER_MESSAGE);
-        }
+        int current;
+
+        // checking and updating in one step, so concurrent done calls can't both pass the check and go negative
+        do {
+            current = counter.get();
 
-        counter.addAndGet(n);
+            if (current + n < 0) {
+                throw new IllegalArgumentException(NEGATIVE_WAITER_COUNTER_MESSAGE);
+            }
+        } while (!counter.compareAndSet(current, current + n));
     }
 
     public void done() {
@@ -0,0 +1,374 @@
+package com.github.adamluzsi.csp;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+class WeightedQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+    // elements and their weights share one ring, so dequeue never has to re-weigh an element
+    private Object[] elements = new Object[16];
+    private long[] weights = new long[16];
+    private int head;
+    private int count;
+    private final ToLongFunction<? super E> weigher;
+    private final long budget;
+    private long weight;
+
+    private final ReentrantLock mutex = new ReentrantLock();
+    private final Condition notEmpty = mutex.newCondition();
+    private final Condition notFull = mutex.newCondition();
+
+    WeightedQueue(long budget, ToLongFunction<? super E> weigher) {
+        if (budget < 1) {
+            throw new IllegalArgumentException("weight budget must be positive");
+        }
+
+        this.budget = budget;
+        this.weigher = weigher;
+    }
+
+    long weight() {
+        mutex.lock();
+        try {
+            return weight;
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    long budget() {
+        return budget;
+    }
+
+    long remainingBudget() {
+        mutex.lock();
+        try {
+            return budget - weight;
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(E e) {
+        long w = weigh(e);
+
+        mutex.lock();
+        try {
+            if (weight + w > budget) {
+                return false;
+            }
+
+            enqueue(e, w);
+            return true;
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    @Override
+    public void put(E e) throws InterruptedException {
+        long w = weigh(e);
+
+        mutex.lockInterruptibly();
+        try {
+            while (weight + w > budget) {
+                notFull.await();
+            }
+
+            enqueue(e, w);
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+        long w = weigh(e);
+        long nanos = unit.toNanos(timeout);
+
+        mutex.lockInterruptibly();
+        try {
+            while (weight + w > budget) {
+                if (nanos <= 0) {
+                    return false;
+                }
+
+                nanos = notFull.awaitNanos(nanos);
+            }
+
+            enqueue(e, w);
+            return true;
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        mutex.lockInterruptibly();
+        try {
+            while (count == 0) {
+                notEmpty.await();
+            }
+
+            return dequeue();
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+
+        mutex.lockInterruptibly();
+        try {
+            while (count == 0) {
+                if (nanos <= 0) {
+                    return null;
+                }
+
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+
+            return dequeue();
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    @Override
+    public E poll() {
+        mutex.lock();
+        try {
+            return count == 0 ? null : dequeue();
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    @Override
+    public E peek() {
+        mutex.lock();
+        try {
+            return count == 0 ? null : element(head);
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        mutex.lock();
+        try {
+            return count;
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        // the budget is counted in weight, not in elements
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        mutex.lock();
+        try {
+            List<E> snapshot = new ArrayList<>(count);
+
+            for (int i = 0; i < count; i++) {
+                snapshot.add(element(index(i)));
+            }
+
+            return Collections.unmodifiableList(snapshot).iterator();
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        mutex.lock();
+        try {
+            int n = 0;
+
+            while (n < maxElements && count > 0) {
+                c.add(dequeue());
+                n++;
+            }
+
+            return n;
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        mutex.lock();
+        try {
+            for (int i = 0; i < count; i++) {
+                if (Objects.equals(elements[index(i)], o)) {
+                    removeAt(i);
+                    return true;
+                }
+            }
+
+            return false;
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    // the iterator is a read-only snapshot, so bulk removal has to work on the ring itself
+    @Override
+    public boolean removeIf(Predicate<? super E> filter) {
+        Objects.requireNonNull(filter);
+
+        mutex.lock();
+        try {
+            int kept = 0;
+
+            for (int i = 0; i < count; i++) {
+                int from = index(i);
+
+                if (filter.test(element(from))) {
+                    weight -= weights[from];
+                    continue;
+                }
+
+                int to = index(kept++);
+                elements[to] = elements[from];
+                weights[to] = weights[from];
+            }
+
+            for (int i = kept; i < count; i++) {
+                elements[index(i)] = null;
+            }
+
+            boolean removed = kept < count;
+            count = kept;
+
+            if (removed) {
+                notFull.signalAll();
+            }
+
+            return removed;
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        Objects.requireNonNull(c);
+        return removeIf(c::contains);
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        Objects.requireNonNull(c);
+        return removeIf((e) -> !c.contains(e));
+    }
+
+    private long weigh(E e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+
+        long w = weigher.applyAsLong(e);
+
+        if (w < 0) {
+            throw new IllegalArgumentException("element weight must not be negative");
+        }
+
+        // an element that could never fit would block put forever, so it is refused up front
+        if (w > budget) {
+            throw new IllegalArgumentException("element weight " + w + " exceeds the channel budget " + budget);
+        }
+
+        return w;
+    }
+
+    private void enqueue(E e, long w) {
+        if (count == elements.length) {
+            grow();
+        }
+
+        int tail = index(count);
+        elements[tail] = e;
+        weights[tail] = w;
+        count++;
+        weight += w;
+
+        notEmpty.signal();
+    }
+
+    private E dequeue() {
+        E e = element(head);
+
+        weight -= weights[head];
+        elements[head] = null;
+        head = (head + 1) % elements.length;
+        count--;
+
+        notFull.signalAll();
+        return e;
+    }
+
+    private void removeAt(int offset) {
+        weight -= weights[index(offset)];
+
+        for (int i = offset; i < count - 1; i++) {
+            elements[index(i)] = elements[index(i + 1)];
+            weights[index(i)] = weights[index(i + 1)];
+        }
+
+        elements[index(count - 1)] = null;
+        count--;
+
+        notFull.signalAll();
+    }
+
+    private void grow() {
+        Object[] grownElements = new Object[elements.length * 2];
+        long[] grownWeights = new long[weights.length * 2];
+
+        for (int i = 0; i < count; i++) {
+            grownElements[i] = elements[index(i)];
+            grownWeights[i] = weights[index(i)];
+        }
+
+        elements = grownElements;
+        weights = grownWeights;
+        head = 0;
+    }
+
+    private int index(int offset) {
+        return (head + offset) % elements.length;
+    }
+
+    @SuppressWarnings("unchecked")
+    private E element(int index) {
+        return (E) elements[index];
+    }
+}
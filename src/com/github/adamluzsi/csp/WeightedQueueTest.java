@@ -0,0 +1,143 @@
+package com.github.adamluzsi.csp;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.testng.Assert.*;
+
+public class WeightedQueueTest {
+    private ExecutorService e = Executors.newCachedThreadPool();
+
+    @Test
+    public void testPut_BudgetExceeded_PutBlocksUntilEnoughWeightIsTaken() throws Exception {
+        Channel<byte[]> subject = new Channel<>(10, (bytes) -> bytes.length);
+
+        subject.put(new byte[6]);
+        subject.put(new byte[4]);
+
+        Future<?> blocked = e.submit(() -> {
+            subject.put(new byte[5]);
+            return null;
+        });
+
+        assertThrows(TimeoutException.class, () -> blocked.get(50, TimeUnit.MILLISECONDS));
+
+        assertEquals(subject.take().length, 6);
+        blocked.get(1, TimeUnit.SECONDS);
+        assertEquals(subject.take().length, 4);
+        assertEquals(subject.take().length, 5);
+    }
+
+    @Test
+    public void testPut_ElementHeavierThanBudget_ExceptionThrown() {
+        Channel<byte[]> subject = new Channel<>(10, (bytes) -> bytes.length);
+
+        assertThrows(IllegalArgumentException.class, () -> subject.put(new byte[11]));
+    }
+
+    @Test
+    public void testPut_DropOldestPolicy_HeadsEvictedUntilElementFits() throws Exception {
+        Channel<byte[]> subject = new Channel<>(10, (bytes) -> bytes.length, OverflowPolicy.dropOldest());
+
+        subject.put(new byte[3]);
+        subject.put(new byte[3]);
+        subject.put(new byte[3]);
+        subject.put(new byte[7]);
+
+        assertEquals(subject.dropped(), 2);
+        assertEquals(subject.take().length, 3);
+        assertEquals(subject.take().length, 7);
+    }
+
+    @Test
+    public void testWeight_ElementsEnqueuedAndRemoved_WeightTracked() throws Exception {
+        WeightedQueue<String> subject = new WeightedQueue<>(100, String::length);
+
+        for (int i = 0; i < 40; i++) {
+            subject.put("ab");
+        }
+        subject.offer("abc");
+
+        assertEquals(subject.weight(), 83);
+        assertTrue(subject.remove("abc"));
+        assertEquals(subject.weight(), 80);
+
+        List<String> drained = new ArrayList<>();
+        assertEquals(subject.drainTo(drained, 10), 10);
+        assertEquals(subject.weight(), 60);
+        assertEquals(subject.size(), 30);
+    }
+
+    @Test
+    public void testOffer_BudgetExceeded_OfferRejected() {
+        WeightedQueue<String> subject = new WeightedQueue<>(5, String::length);
+
+        assertTrue(subject.offer("abc"));
+        assertFalse(subject.offer("abc"));
+        assertEquals(subject.peek(), "abc");
+    }
+
+    @Test
+    public void testRemoveIf_BudgetExhausted_BlockedPutProceedsWithWeightTracked() throws Exception {
+        WeightedQueue<String> subject = new WeightedQueue<>(10, String::length);
+        subject.put("aaaa");
+        subject.put("bb");
+        subject.put("cccc");
+
+        Future<?> blocked = e.submit(() -> {
+            subject.put("dddddd");
+            return null;
+        });
+
+        assertThrows(TimeoutException.class, () -> blocked.get(50, TimeUnit.MILLISECONDS));
+        assertTrue(subject.removeIf((s) -> s.length() == 4));
+        blocked.get(1, TimeUnit.SECONDS);
+
+        assertEquals(subject.weight(), 8);
+        assertEquals(subject.take(), "bb");
+        assertEquals(subject.take(), "dddddd");
+    }
+
+    @Test
+    public void testRemoveAllAndRetainAll_WrappedAroundRing_OrderAndWeightKept() throws Exception {
+        WeightedQueue<String> subject = new WeightedQueue<>(100, String::length);
+        for (int i = 0; i < 20; i++) {
+            subject.put("x" + i);
+        }
+        for (int i = 0; i < 15; i++) {
+            subject.take();
+        }
+        for (int i = 20; i < 30; i++) {
+            subject.put("x" + i);
+        }
+
+        assertTrue(subject.removeAll(List.of("x16", "x21", "x29")));
+        assertFalse(subject.removeAll(List.of("x0")));
+        assertTrue(subject.retainAll(List.of("x15", "x17", "x22", "x28")));
+
+        assertEquals(subject.weight(), 12);
+        assertEquals(new ArrayList<>(subject), List.of("x15", "x17", "x22", "x28"));
+    }
+
+    @Test
+    public void testRemoveIf_OnWeightedChannel_RemainingBudgetFreed() throws Exception {
+        Channel<String> subject = new Channel<>(10L, String::length);
+        subject.put("aaaa");
+        subject.put("bbb");
+
+        assertEquals(subject.remainingBudget(), 3);
+        assertEquals(subject.capacity(), Integer.MAX_VALUE);
+        assertTrue(subject.removeIf((s) -> s.startsWith("a")));
+        assertEquals(subject.remainingBudget(), 7);
+        assertEquals(new Channel<String>(4).remainingBudget(), 4);
+    }
+
+    @Test
+    public void testConstructor_NonPositiveBudget_ExceptionThrown() {
+        assertThrows(IllegalArgumentException.class, () -> new Channel<String>(0L, String::length));
+    }
+
+}
@@ -0,0 +1,108 @@
+package com.github.adamluzsi.csp;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+class WorkerPool<E> {
+    private final Channel<E> channel;
+    private final int min;
+    private final int max;
+    private final long keepAlive;
+    private final Consumer<? super E> action;
+    private final WaitGroup wg = new WaitGroup();
+    private final AtomicInteger live = new AtomicInteger();
+    private final AtomicInteger idle = new AtomicInteger();
+
+    WorkerPool(Channel<E> channel, int min, int max, long keepAlive, TimeUnit unit, Consumer<? super E> action) {
+        if (min < 1 || max < min) {
+            throw new IllegalArgumentException("worker pool requires 1 <= min <= max");
+        }
+
+        this.channel = channel;
+        this.min = min;
+        this.max = max;
+        this.keepAlive = unit.toNanos(keepAlive);
+        this.action = action;
+    }
+
+    WaitGroup start() {
+        for (int i = 0; i < min; i++) {
+            spawn();
+        }
+
+        return wg;
+    }
+
+    private void spawn() {
+        int n;
+
+        do {
+            n = live.get();
+
+            if (n >= max) {
+                return;
+            }
+        } while (!live.compareAndSet(n, n + 1));
+
+        wg.add(1);
+        Channel.go(this::work);
+    }
+
+    private boolean retire() {
+        int n;
+
+        do {
+            n = live.get();
+
+            if (n <= min) {
+                return false;
+            }
+        } while (!live.compareAndSet(n, n - 1));
+
+        return true;
+    }
+
+    private void work() {
+        boolean retired = false;
+
+        try {
+            while (!retired) {
+                E e;
+
+                idle.incrementAndGet();
+                try {
+                    e = channel.poll(keepAlive, TimeUnit.NANOSECONDS);
+                } finally {
+                    idle.decrementAndGet();
+                }
+
+                if (e == null) {
+                    retired = retire();
+                    continue;
+                }
+
+                // nobody else is free to pick up the next element, so grow before processing this one
+                if (idle.get() == 0 && channel.backlogged()) {
+                    spawn();
+                }
+
+                // a failing element is reported like an uncaught exception, but the worker stays to keep the pool at min
+                try {
+                    action.accept(e);
+                } catch (RuntimeException ex) {
+                    Thread current = Thread.currentThread();
+                    current.getUncaughtExceptionHandler().uncaughtException(current, ex);
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.interrupted();
+        } finally {
+            if (!retired) {
+                live.decrementAndGet();
+            }
+
+            wg.done();
+        }
+    }
+}